@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.benchmark;
+
+import com.noveogroup.android.cache.disk.DiskCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Helpers shared by benchmarks.
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Creates new empty temp directory.
+     *
+     * @return the directory.
+     * @throws IOException if I/O error occurred.
+     */
+    public static File createTempDirectory() throws IOException {
+        File file = File.createTempFile("cache-benchmark-", "");
+        if (!file.delete() || !file.mkdirs()) {
+            throw new IOException("cannot create temp directory " + file);
+        }
+        return file;
+    }
+
+    /**
+     * Deletes a file or a directory.
+     *
+     * @param file the file or the directory.
+     */
+    public static void delete(File file) {
+        if (file == null) {
+            return;
+        }
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Turns off automatic cleaning and size limits of the disk cache
+     * so background cleaning doesn't interfere with measurements.
+     *
+     * @param cache the cache.
+     */
+    public static void disableCleaning(DiskCache<?> cache) {
+        cache.setCleanTimeDelay(Long.MAX_VALUE);
+        cache.setCleanModificationCount(Long.MAX_VALUE);
+        cache.setMaxSize(-1);
+        cache.setMaxAge(-1);
+    }
+
+    /**
+     * Creates an array of random bytes.
+     *
+     * @param size the size of the array.
+     * @return the array.
+     */
+    public static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+}
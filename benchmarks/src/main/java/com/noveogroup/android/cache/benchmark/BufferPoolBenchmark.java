@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.benchmark;
+
+import com.noveogroup.android.cache.disk.DiskCache;
+import com.noveogroup.android.cache.disk.MetaData;
+import com.noveogroup.android.cache.io.ByteArraySerializer;
+import com.noveogroup.android.cache.util.BufferPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Effect of {@link BufferPool} on I/O paths of {@link DiskCache}.
+ * Zero pool size turns pooling off, so every operation allocates its buffers.
+ * Should be run with the GC profiler ({@code -prof gc}) to see allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BufferPoolBenchmark {
+
+    private static final int KEY_COUNT = 16;
+
+    @Param({"1024", "8192"})
+    public int bufferSize;
+
+    @Param({"0", "16"})
+    public int poolSize;
+
+    @Param({"1024", "102400"})
+    public int valueSize;
+
+    private BufferPool previousPool;
+    private File directory;
+    private DiskCache<String> cache;
+    private ByteArraySerializer serializer;
+    private String[] keys;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        previousPool = BufferPool.getInstance();
+        BufferPool.setInstance(new BufferPool(bufferSize, poolSize));
+
+        directory = Benchmarks.createTempDirectory();
+        cache = DiskCache.create(directory, String.class);
+        Benchmarks.disableCleaning(cache);
+        serializer = new ByteArraySerializer();
+
+        byte[] value = Benchmarks.randomBytes(valueSize);
+        MetaData metaData = new MetaData();
+        metaData.putValue("name", "value");
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "key-" + i;
+            cache.put(keys[i], value, metaData, serializer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Benchmarks.delete(directory);
+        BufferPool.setInstance(previousPool);
+    }
+
+    private String next() {
+        return keys[(counter++ & Integer.MAX_VALUE) % KEY_COUNT];
+    }
+
+    @Benchmark
+    public byte[] get() {
+        return cache.get(next(), serializer);
+    }
+
+    @Benchmark
+    public MetaData getMetaData() {
+        return cache.getMetaData(next());
+    }
+
+}
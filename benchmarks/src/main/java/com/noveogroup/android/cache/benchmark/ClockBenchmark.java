@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.benchmark;
+
+import com.noveogroup.android.cache.io.DefaultKeyManager;
+import com.noveogroup.android.cache.memory.MemoryCache;
+import com.noveogroup.android.cache.util.Clock;
+import com.noveogroup.android.cache.util.CoarseClock;
+import com.noveogroup.android.cache.util.DefaultClock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costs of clock implementations, both raw and on the hot path
+ * of {@link MemoryCache#get(Object)} which reads the clock on every access.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClockBenchmark {
+
+    private static final int KEY_COUNT = 1024;
+
+    @Param({"default", "coarse", "manual"})
+    public String clockType;
+
+    private Clock clock;
+    private MemoryCache<Integer, Object> cache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("default".equals(clockType)) {
+            clock = new DefaultClock();
+        } else if ("coarse".equals(clockType)) {
+            clock = new CoarseClock();
+        } else {
+            clock = new ManualClock(0);
+        }
+
+        cache = new MemoryCache<Integer, Object>(new DefaultKeyManager<Integer>(), clock);
+        cache.setMaxSize(-1);
+        cache.setCleanTimeDelay(Long.MAX_VALUE);
+        cache.setCleanModificationCount(Long.MAX_VALUE);
+        Object value = new Object();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            cache.put(i, value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (clock instanceof CoarseClock) {
+            ((CoarseClock) clock).stop();
+        }
+    }
+
+    @Benchmark
+    public long uptimeMillis() {
+        return clock.uptimeMillis();
+    }
+
+    @Benchmark
+    public long currentTimeMillis() {
+        return clock.currentTimeMillis();
+    }
+
+    @Benchmark
+    public Object getHit() {
+        return cache.get(ThreadLocalRandom.current().nextInt(KEY_COUNT)).get();
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.benchmark;
+
+import com.noveogroup.android.cache.disk.DiskCache;
+import com.noveogroup.android.cache.disk.DiskCacheCore;
+import com.noveogroup.android.cache.io.ByteArraySerializer;
+import com.noveogroup.android.cache.io.ByteBufferSerializer;
+import com.noveogroup.android.cache.io.RawByteArraySerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of basic {@link DiskCache} operations across value sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiskCacheBenchmark {
+
+    private static final int KEY_COUNT = 16;
+
+    @Param({"100", "1024", "10240", "102400", "1048576", "10485760"})
+    public int valueSize;
+
+    private File directory;
+    private DiskCache<String> cache;
+    private ByteArraySerializer serializer;
+    private RawByteArraySerializer rawSerializer;
+    private ByteBufferSerializer bufferSerializer;
+    private byte[] value;
+    private String[] hitKeys;
+    private String[] putKeys;
+    private String[] rawKeys;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Benchmarks.createTempDirectory();
+        cache = DiskCache.create(directory, String.class);
+        Benchmarks.disableCleaning(cache);
+        serializer = new ByteArraySerializer();
+        rawSerializer = new RawByteArraySerializer();
+        bufferSerializer = new ByteBufferSerializer();
+        value = Benchmarks.randomBytes(valueSize);
+
+        hitKeys = new String[KEY_COUNT];
+        putKeys = new String[KEY_COUNT];
+        rawKeys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            hitKeys[i] = "hit-" + i;
+            putKeys[i] = "put-" + i;
+            rawKeys[i] = "raw-" + i;
+            cache.put(hitKeys[i], value, serializer);
+            cache.put(rawKeys[i], value, rawSerializer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Benchmarks.delete(directory);
+    }
+
+    private int next() {
+        return (counter++ & Integer.MAX_VALUE) % KEY_COUNT;
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put(putKeys[next()], value, serializer);
+    }
+
+    @Benchmark
+    public byte[] getHit() {
+        return cache.get(hitKeys[next()], serializer);
+    }
+
+    @Benchmark
+    public void putRaw() {
+        cache.put(putKeys[next()], value, rawSerializer);
+    }
+
+    @Benchmark
+    public byte[] getHitRaw() {
+        return cache.get(rawKeys[next()], rawSerializer);
+    }
+
+    @Benchmark
+    public ByteBuffer getHitBuffer() {
+        return cache.get(rawKeys[next()], bufferSerializer);
+    }
+
+    @Benchmark
+    public byte[] getMiss() {
+        return cache.get("miss", serializer);
+    }
+
+    @Benchmark
+    public DiskCacheCore.Entry<String> searchHit() {
+        return cache.search(hitKeys[next()]);
+    }
+
+    @Benchmark
+    public DiskCacheCore.Entry<String> searchMiss() {
+        return cache.search("miss");
+    }
+
+    /**
+     * Separate state for remove benchmark: every invocation needs an entry to remove.
+     */
+    @State(Scope.Thread)
+    public static class RemoveState {
+
+        private File directory;
+        private DiskCache<String> cache;
+        private byte[] value;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Benchmarks.createTempDirectory();
+            cache = DiskCache.create(directory, String.class);
+            Benchmarks.disableCleaning(cache);
+            value = Benchmarks.randomBytes(1024);
+        }
+
+        @Setup(Level.Invocation)
+        public void putEntry() {
+            cache.put("remove", value, new ByteArraySerializer());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Benchmarks.delete(directory);
+        }
+
+    }
+
+    @Benchmark
+    public boolean remove(RemoveState state) {
+        return state.cache.remove("remove");
+    }
+
+}
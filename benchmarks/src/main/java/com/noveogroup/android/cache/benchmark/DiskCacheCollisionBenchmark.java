@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.benchmark;
+
+import com.noveogroup.android.cache.disk.DiskCache;
+import com.noveogroup.android.cache.io.ByteArraySerializer;
+import com.noveogroup.android.cache.io.DefaultSerializer;
+import com.noveogroup.android.cache.io.KeyManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link DiskCache} lookups when many keys share one hash code
+ * and therefore one hash code directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiskCacheCollisionBenchmark {
+
+    /**
+     * Key manager mapping all keys to one hash code.
+     */
+    private static class CollidingKeyManager implements KeyManager<String> {
+
+        @Override
+        public int hashCode(String key) {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(String key1, String key2) {
+            return key1 == null ? key2 == null : key1.equals(key2);
+        }
+
+    }
+
+    @Param({"1", "8", "64", "256"})
+    public int bucketSize;
+
+    @Param({"false", "true"})
+    public boolean keyMatching;
+
+    private File directory;
+    private DiskCache<String> cache;
+    private ByteArraySerializer serializer;
+    private String[] keys;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Benchmarks.createTempDirectory();
+        cache = DiskCache.create(directory, new CollidingKeyManager(), new DefaultSerializer<String>());
+        Benchmarks.disableCleaning(cache);
+        cache.setKeyMatchingEnabled(keyMatching);
+        serializer = new ByteArraySerializer();
+
+        byte[] value = Benchmarks.randomBytes(100);
+        keys = new String[bucketSize];
+        for (int i = 0; i < bucketSize; i++) {
+            keys[i] = "key-" + i;
+            cache.put(keys[i], value, serializer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Benchmarks.delete(directory);
+    }
+
+    @Benchmark
+    public byte[] getHit() {
+        return cache.get(keys[(counter++ & Integer.MAX_VALUE) % bucketSize], serializer);
+    }
+
+    @Benchmark
+    public byte[] getMiss() {
+        return cache.get("miss", serializer);
+    }
+
+    @Benchmark
+    public boolean containsMiss() {
+        return cache.contains("miss");
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.benchmark;
+
+import com.noveogroup.android.cache.disk.DiskCache;
+import com.noveogroup.android.cache.io.ByteArraySerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link DiskCache} operations depending on count of entries,
+ * i.e. on count of hash code directories in the meta data directory,
+ * and on count of levels of entry directories.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiskCacheScalingBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int entryCount;
+
+    @Param({"-1", "1", "2"})
+    public int fanOutLevels;
+
+    private File directory;
+    private DiskCache<String> cache;
+    private ByteArraySerializer serializer;
+    private byte[] value;
+    private String[] keys;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Benchmarks.createTempDirectory();
+        cache = DiskCache.create(directory, String.class);
+        Benchmarks.disableCleaning(cache);
+        cache.setFanOutLevels(fanOutLevels);
+        serializer = new ByteArraySerializer();
+        value = Benchmarks.randomBytes(100);
+        random = new Random(entryCount);
+
+        keys = new String[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            keys[i] = "key-" + i;
+            cache.put(keys[i], value, serializer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Benchmarks.delete(directory);
+    }
+
+    @Benchmark
+    public byte[] getHit() {
+        return cache.get(keys[random.nextInt(entryCount)], serializer);
+    }
+
+    @Benchmark
+    public byte[] getMiss() {
+        return cache.get("miss-" + random.nextInt(entryCount), serializer);
+    }
+
+    @Benchmark
+    public void overwrite() {
+        cache.put(keys[random.nextInt(entryCount)], value, serializer);
+    }
+
+}
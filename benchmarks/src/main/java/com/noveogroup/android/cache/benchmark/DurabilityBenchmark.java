@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.benchmark;
+
+import com.noveogroup.android.cache.disk.DiskCache;
+import com.noveogroup.android.cache.disk.DiskCacheCore;
+import com.noveogroup.android.cache.io.ByteArraySerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks of concurrent {@link DiskCache} puts for each durability of commits.
+ * Results depend on the storage, temporary file systems make syncs free.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DurabilityBenchmark {
+
+    private static final int KEY_COUNT = 64;
+
+    @Param({"NONE", "ASYNC", "PER_COMMIT", "GROUP_COMMIT"})
+    public DiskCacheCore.Durability durability;
+
+    @Param({"1024"})
+    public int valueSize;
+
+    private File directory;
+    private DiskCache<String> cache;
+    private ByteArraySerializer serializer;
+    private byte[] value;
+    private String[] keys;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Benchmarks.createTempDirectory();
+        cache = DiskCache.create(directory, String.class);
+        Benchmarks.disableCleaning(cache);
+        cache.setDurability(durability);
+        serializer = new ByteArraySerializer();
+        value = Benchmarks.randomBytes(valueSize);
+
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "key-" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Benchmarks.delete(directory);
+    }
+
+    @Benchmark
+    public void put() {
+        int index = (counter.getAndIncrement() & Integer.MAX_VALUE) % KEY_COUNT;
+        cache.put(keys[index], value, serializer);
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.benchmark;
+
+import com.noveogroup.android.cache.util.Clock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deterministic clock for benchmarks. The time moves only when
+ * {@link #advance(long)} is called, so ages of values don't depend
+ * on the duration of a benchmark.
+ */
+public class ManualClock implements Clock {
+
+    private final AtomicLong time;
+
+    /**
+     * Creates new manual clock.
+     *
+     * @param time the initial time in milliseconds.
+     */
+    public ManualClock(long time) {
+        this.time = new AtomicLong(time);
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param millis the amount of milliseconds.
+     */
+    public void advance(long millis) {
+        time.addAndGet(millis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return time.get();
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return time.get();
+    }
+
+}
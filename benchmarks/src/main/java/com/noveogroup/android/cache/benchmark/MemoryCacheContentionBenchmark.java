@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.benchmark;
+
+import com.noveogroup.android.cache.memory.MemoryCache;
+import com.noveogroup.android.cache.memory.Reference;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention benchmarks of {@link MemoryCache} operations.
+ * All operations are serialized by the global lock of the cache,
+ * so the benchmarks should be run with different count of threads.
+ *
+ * @see MemoryCacheBenchmarkRunner
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemoryCacheContentionBenchmark {
+
+    private static final int KEY_COUNT = 1024;
+
+    @Param({"100", "90", "50", "10"})
+    public int readPercent;
+
+    @Param({"1", "16", "256"})
+    public int tokenCount;
+
+    private MemoryCache<Integer, Object> cache;
+    private MemoryCache.Access<Integer, Object>[] accesses;
+    private Integer[] keys;
+    private Object value;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        cache = new MemoryCache<Integer, Object>();
+        cache.setMaxSize(-1);
+        cache.setCleanTimeDelay(Long.MAX_VALUE);
+        cache.setCleanModificationCount(Long.MAX_VALUE);
+
+        accesses = new MemoryCache.Access[tokenCount];
+        for (int i = 0; i < tokenCount; i++) {
+            accesses[i] = cache.access("token-" + i);
+        }
+
+        value = new Object();
+        keys = new Integer[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = i;
+            accesses[i % tokenCount].put(keys[i], value);
+        }
+    }
+
+    private MemoryCache.Access<Integer, Object> access(ThreadLocalRandom random) {
+        return accesses[random.nextInt(tokenCount)];
+    }
+
+    @Benchmark
+    public Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer key = keys[random.nextInt(KEY_COUNT)];
+        if (random.nextInt(100) < readPercent) {
+            return access(random).get(key).get();
+        } else {
+            access(random).put(key, value);
+            return value;
+        }
+    }
+
+    @Benchmark
+    public Reference<Object> get() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return access(random).get(keys[random.nextInt(KEY_COUNT)]);
+    }
+
+    @Benchmark
+    public void put() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        access(random).put(keys[random.nextInt(KEY_COUNT)], value);
+    }
+
+    @Benchmark
+    public void erase() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        MemoryCache.Access<Integer, Object> access = access(random);
+        access.put(keys[random.nextInt(KEY_COUNT)], value);
+        access.erase();
+    }
+
+    @Benchmark
+    public long size() {
+        return cache.size();
+    }
+
+}
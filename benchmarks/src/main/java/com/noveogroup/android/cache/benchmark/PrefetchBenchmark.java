@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.benchmark;
+
+import com.noveogroup.android.cache.disk.DiskCache;
+import com.noveogroup.android.cache.io.ByteArraySerializer;
+import com.noveogroup.android.cache.memory.MemoryCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of warming a {@link MemoryCache} up from a {@link DiskCache}:
+ * sequential gets versus prefetch with different parallelism.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrefetchBenchmark {
+
+    @Param({"200"})
+    public int keyCount;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"-1", "2"})
+    public int fanOutLevels;
+
+    private File directory;
+    private DiskCache<String> cache;
+    private ByteArraySerializer serializer;
+    private List<String> keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Benchmarks.createTempDirectory();
+        cache = DiskCache.create(directory, String.class);
+        Benchmarks.disableCleaning(cache);
+        cache.setFanOutLevels(fanOutLevels);
+        serializer = new ByteArraySerializer();
+
+        byte[] value = Benchmarks.randomBytes(1024);
+        keys = new ArrayList<String>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            keys.add("key-" + i);
+            cache.put(keys.get(i), value, serializer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Benchmarks.delete(directory);
+    }
+
+    private MemoryCache<String, byte[]> createMemoryCache() {
+        MemoryCache<String, byte[]> memoryCache = new MemoryCache<String, byte[]>();
+        memoryCache.setMaxSize(-1);
+        return memoryCache;
+    }
+
+    @Benchmark
+    public MemoryCache<String, byte[]> sequentialGet() {
+        MemoryCache<String, byte[]> memoryCache = createMemoryCache();
+        for (String key : keys) {
+            memoryCache.put(key, cache.get(key, serializer));
+        }
+        return memoryCache;
+    }
+
+    @Benchmark
+    public MemoryCache<String, byte[]> prefetch() throws InterruptedException, ExecutionException {
+        MemoryCache<String, byte[]> memoryCache = createMemoryCache();
+        cache.prefetch(keys, serializer, memoryCache, parallelism).get();
+        return memoryCache;
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.benchmark;
+
+import com.noveogroup.android.cache.io.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares object stream based serializers with compact
+ * {@link DataSerializer} implementations. Values are serialized
+ * to memory, so the benchmarks measure CPU and allocation costs only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializerBenchmark {
+
+    private static final int LIST_SIZE = 100;
+
+    @Param({"100", "10240", "1048576"})
+    public int valueSize;
+
+    private final ByteArraySerializer byteArraySerializer = new ByteArraySerializer();
+    private final DataByteArraySerializer dataByteArraySerializer = new DataByteArraySerializer();
+    private final StringSerializer stringSerializer = new StringSerializer();
+    private final DataStringSerializer dataStringSerializer = new DataStringSerializer();
+    private final DefaultSerializer<Long> longSerializer = new DefaultSerializer<Long>();
+    private final DefaultSerializer<ArrayList<String>> listSerializer = new DefaultSerializer<ArrayList<String>>();
+    private final DataListSerializer<String> dataListSerializer = new DataListSerializer<String>(new DataStringSerializer());
+
+    private byte[] bytes;
+    private String string;
+    private ArrayList<String> list;
+
+    private MemorySource byteArrayData;
+    private MemorySource dataByteArrayData;
+    private MemorySource stringData;
+    private MemorySource dataStringData;
+    private MemorySource longData;
+    private MemorySource dataLongData;
+    private MemorySource listData;
+    private MemorySource dataListData;
+
+    /**
+     * Keeps saved bytes in memory.
+     */
+    private static class MemorySource implements InputSource, OutputSource {
+
+        private byte[] data = new byte[0];
+
+        @Override
+        public InputStream openInputStream() {
+            return new ByteArrayInputStream(data);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    data = toByteArray();
+                }
+            };
+        }
+
+    }
+
+    private static <T> MemorySource save(Serializer<T> serializer, T value) throws IOException {
+        MemorySource source = new MemorySource();
+        serializer.save(source, value);
+        return source;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        bytes = Benchmarks.randomBytes(valueSize);
+        StringBuilder builder = new StringBuilder(valueSize);
+        for (int i = 0; i < valueSize; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        string = builder.toString();
+        list = new ArrayList<String>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            list.add(string.substring(0, Math.min(valueSize, 100)));
+        }
+
+        byteArrayData = save(byteArraySerializer, bytes);
+        dataByteArrayData = save(dataByteArraySerializer, bytes);
+        stringData = save(stringSerializer, string);
+        dataStringData = save(dataStringSerializer, string);
+        longData = save(longSerializer, (long) valueSize);
+        dataLongData = save(DataPrimitiveSerializer.LONG, (long) valueSize);
+        listData = save(listSerializer, list);
+        dataListData = save(dataListSerializer, (List<String>) list);
+    }
+
+    @Benchmark
+    public void saveByteArray() throws IOException {
+        byteArraySerializer.save(new MemorySource(), bytes);
+    }
+
+    @Benchmark
+    public void saveDataByteArray() throws IOException {
+        dataByteArraySerializer.save(new MemorySource(), bytes);
+    }
+
+    @Benchmark
+    public byte[] loadByteArray() throws IOException {
+        return byteArraySerializer.load(byteArrayData);
+    }
+
+    @Benchmark
+    public byte[] loadDataByteArray() throws IOException {
+        return dataByteArraySerializer.load(dataByteArrayData);
+    }
+
+    @Benchmark
+    public void saveString() throws IOException {
+        stringSerializer.save(new MemorySource(), string);
+    }
+
+    @Benchmark
+    public void saveDataString() throws IOException {
+        dataStringSerializer.save(new MemorySource(), string);
+    }
+
+    @Benchmark
+    public String loadString() throws IOException {
+        return stringSerializer.load(stringData);
+    }
+
+    @Benchmark
+    public String loadDataString() throws IOException {
+        return dataStringSerializer.load(dataStringData);
+    }
+
+    @Benchmark
+    public Long loadLong() throws IOException {
+        return longSerializer.load(longData);
+    }
+
+    @Benchmark
+    public Long loadDataLong() throws IOException {
+        return DataPrimitiveSerializer.LONG.load(dataLongData);
+    }
+
+    @Benchmark
+    public List<String> loadList() throws IOException {
+        return listSerializer.load(listData);
+    }
+
+    @Benchmark
+    public List<String> loadDataList() throws IOException {
+        return dataListSerializer.load(dataListData);
+    }
+
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import com.noveogroup.android.cache.io.DefaultSerializer;
+import com.noveogroup.android.cache.io.Serializer;
+import com.noveogroup.android.cache.util.DaemonThreadFactory;
+
+import java.io.Serializable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous facade of {@link DiskCache}.
+ * <p/>
+ * All operations are executed by an I/O executor and return futures.
+ * Results can be also delivered to callbacks. Callbacks are called
+ * in threads of the executor, except callbacks of cancelled operations
+ * which are called in the thread cancelling the operation.
+ *
+ * @param <K> a type of keys.
+ */
+public class AsyncDiskCache<K> {
+
+    /**
+     * Default count of I/O threads.
+     */
+    public static final int DEFAULT_THREAD_COUNT = 2;
+    /**
+     * Default capacity of the queue of pending operations.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * Callback receives results of asynchronous operations.
+     *
+     * @param <T> a type of the result.
+     */
+    public static interface Callback<T> {
+
+        /**
+         * Called when the operation is successfully completed.
+         *
+         * @param result the result.
+         */
+        public void onSuccess(T result);
+
+        /**
+         * Called when the operation is failed or cancelled.
+         * In case of cancellation it is called in the cancelling thread.
+         *
+         * @param error the error.
+         */
+        public void onFailure(Throwable error);
+
+    }
+
+    private static class CallbackTask<T> extends FutureTask<T> {
+
+        private final Callback<T> callback;
+
+        public CallbackTask(Callable<T> callable, Callback<T> callback) {
+            super(callable);
+            this.callback = callback;
+        }
+
+        @Override
+        protected void done() {
+            if (callback == null) {
+                return;
+            }
+
+            T result;
+            try {
+                result = get();
+            } catch (CancellationException e) {
+                callback.onFailure(e);
+                return;
+            } catch (ExecutionException e) {
+                callback.onFailure(e.getCause());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                callback.onFailure(e);
+                return;
+            }
+            callback.onSuccess(result);
+        }
+
+    }
+
+    private static class BlockingPolicy implements RejectedExecutionHandler {
+
+        private static final long OFFER_TIMEOUT = 100;
+
+        private final ThreadLocal<Boolean> ioThread = new ThreadLocal<Boolean>();
+
+        /**
+         * Wraps the thread factory to mark threads of the executor.
+         */
+        public ThreadFactory wrap(final ThreadFactory threadFactory) {
+            return new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return threadFactory.newThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            ioThread.set(Boolean.TRUE);
+                            runnable.run();
+                        }
+                    });
+                }
+            };
+        }
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("executor has been shut down");
+            }
+
+            // an I/O thread waiting for the queue would never drain it
+            if (ioThread.get() != null) {
+                runnable.run();
+                return;
+            }
+
+            try {
+                while (!executor.getQueue().offer(runnable, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("executor has been shut down");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("interrupted while waiting for the queue");
+            }
+
+            // the task queued during shutdown could be never executed
+            if (executor.isShutdown() && executor.getQueue().remove(runnable)) {
+                throw new RejectedExecutionException("executor has been shut down");
+            }
+        }
+
+    }
+
+    /**
+     * Creates new I/O executor with bounded queue of pending operations.
+     * When the queue is full a caller will be blocked until the queue
+     * has free space. So bursts of disk operations don't pile up
+     * threads and memory. Operations submitted by I/O threads themselves
+     * (e.g. from callbacks) are run in the submitting thread instead of
+     * waiting, and operations waiting for the queue are rejected when the
+     * executor is shut down.
+     *
+     * @param threadCount   count of I/O threads.
+     * @param queueCapacity capacity of the queue.
+     * @return the executor.
+     */
+    public static ExecutorService createExecutor(int threadCount, int queueCapacity) {
+        if (threadCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("thread count and queue capacity should be positive");
+        }
+
+        BlockingPolicy policy = new BlockingPolicy();
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                policy.wrap(new DaemonThreadFactory(DiskCacheCore.TAG + "-io")),
+                policy);
+    }
+
+    private final DiskCache<K> diskCache;
+    private final ExecutorService executor;
+
+    /**
+     * Creates new asynchronous facade using default I/O executor.
+     *
+     * @param diskCache the disk cache.
+     * @see #createExecutor(int, int)
+     */
+    public AsyncDiskCache(DiskCache<K> diskCache) {
+        this(diskCache, createExecutor(DEFAULT_THREAD_COUNT, DEFAULT_QUEUE_CAPACITY));
+    }
+
+    /**
+     * Creates new asynchronous facade.
+     *
+     * @param diskCache the disk cache.
+     * @param executor  an I/O executor.
+     */
+    public AsyncDiskCache(DiskCache<K> diskCache, ExecutorService executor) {
+        if (diskCache == null || executor == null) {
+            throw new NullPointerException();
+        }
+
+        this.diskCache = diskCache;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the disk cache.
+     *
+     * @return the disk cache.
+     */
+    public DiskCache<K> getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * Returns the I/O executor.
+     *
+     * @return the executor.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Shuts the I/O executor down. Already submitted operations will be completed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> Future<T> submit(Callable<T> callable, Callback<T> callback) {
+        CallbackTask<T> task = new CallbackTask<T>(callable, callback);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Asynchronously loads a value corresponding to the specified key.
+     *
+     * @param key             the key.
+     * @param valueSerializer the value serializer.
+     * @param callback        the callback. May be null.
+     * @param <V>             a type of the value.
+     * @return the future of the value.
+     * @see DiskCache#get(Object, Serializer)
+     */
+    public <V> Future<V> getAsync(final K key, final Serializer<V> valueSerializer, Callback<V> callback) {
+        return submit(new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                return diskCache.get(key, valueSerializer);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronously loads a value corresponding to the specified key.
+     * The value will be loaded using default serializer.
+     *
+     * @param key      the key.
+     * @param callback the callback. May be null.
+     * @param <V>      a type of the value.
+     * @return the future of the value.
+     * @see DiskCache#get(Object)
+     */
+    public <V extends Serializable> Future<V> getAsync(K key, Callback<V> callback) {
+        return getAsync(key, new DefaultSerializer<V>(), callback);
+    }
+
+    /**
+     * Asynchronously saves an entry to the cache.
+     *
+     * @param key             the key.
+     * @param value           the value.
+     * @param metaData        the meta data.
+     * @param valueSerializer the value serializer.
+     * @param callback        the callback. May be null.
+     * @param <V>             a type of the value.
+     * @return the future of the operation.
+     * @see DiskCache#put(Object, Object, MetaData, Serializer)
+     */
+    public <V> Future<Void> putAsync(final K key, final V value, final MetaData metaData,
+                                     final Serializer<V> valueSerializer, Callback<Void> callback) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                diskCache.put(key, value, metaData, valueSerializer);
+                return null;
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronously saves an entry to the cache.
+     *
+     * @param key             the key.
+     * @param value           the value.
+     * @param valueSerializer the value serializer.
+     * @param callback        the callback. May be null.
+     * @param <V>             a type of the value.
+     * @return the future of the operation.
+     * @see DiskCache#put(Object, Object, Serializer)
+     */
+    public <V> Future<Void> putAsync(final K key, final V value, final Serializer<V> valueSerializer,
+                                     Callback<Void> callback) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                diskCache.put(key, value, valueSerializer);
+                return null;
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronously saves an entry to the cache.
+     * The value will be saved using default serializer.
+     *
+     * @param key      the key.
+     * @param value    the value.
+     * @param callback the callback. May be null.
+     * @param <V>      a type of the value.
+     * @return the future of the operation.
+     * @see DiskCache#put(Object, Serializable)
+     */
+    public <V extends Serializable> Future<Void> putAsync(K key, V value, Callback<Void> callback) {
+        return putAsync(key, value, null, new DefaultSerializer<V>(), callback);
+    }
+
+    /**
+     * Asynchronously removes an entry corresponding to the specified key.
+     *
+     * @param key      the key.
+     * @param callback the callback. May be null.
+     * @return the future of the result of removing.
+     * @see DiskCache#remove(Object)
+     */
+    public Future<Boolean> removeAsync(final K key, Callback<Boolean> callback) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return diskCache.remove(key);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronously checks if the cache contains an entry corresponding
+     * to the specified key.
+     *
+     * @param key      the key.
+     * @param callback the callback. May be null.
+     * @return the future of the result of checking.
+     * @see DiskCache#contains(Object)
+     */
+    public Future<Boolean> containsAsync(final K key, Callback<Boolean> callback) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return diskCache.contains(key);
+            }
+        }, callback);
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Counting Bloom filter of 64-bit fingerprints with 4-bit counters.
+ * <p/>
+ * The filter never misses an added fingerprint unless it has been removed
+ * more times than added. Saturated counters are never decremented.
+ */
+class BloomFilter {
+
+    private static final int HASH_COUNT = 7;
+    private static final int COUNTERS_PER_ENTRY = 10;
+    private static final int MIN_COUNTER_COUNT = 1024;
+    private static final int MAX_COUNTER = 15;
+
+    private final long[] words;
+    private final int counterCount;
+    private int size;
+
+    /**
+     * Creates new empty filter. The filter is sized for twice the
+     * expected count of fingerprints to keep false positive rate
+     * low when fingerprints are added.
+     *
+     * @param expectedSize expected count of fingerprints.
+     */
+    public BloomFilter(int expectedSize) {
+        long counterCount = Math.max(MIN_COUNTER_COUNT, 2L * expectedSize * COUNTERS_PER_ENTRY);
+        counterCount = Math.min(counterCount, Integer.MAX_VALUE / 2);
+        this.words = new long[(int) ((counterCount + 15) / 16)];
+        this.counterCount = words.length * 16;
+        this.size = 0;
+    }
+
+    private BloomFilter(long[] words, int size) {
+        this.words = words;
+        this.counterCount = words.length * 16;
+        this.size = size;
+    }
+
+    /**
+     * Returns count of added fingerprints minus count of removed ones.
+     *
+     * @return the size of the filter.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int index(long fingerprint, int i) {
+        int hash = (int) fingerprint + i * (int) (fingerprint >>> 32);
+        return (hash & Integer.MAX_VALUE) % counterCount;
+    }
+
+    private int getCounter(int index) {
+        return (int) (words[index >>> 4] >>> ((index & 15) << 2)) & MAX_COUNTER;
+    }
+
+    private void addCounter(int index, int delta) {
+        words[index >>> 4] += (long) delta << ((index & 15) << 2);
+    }
+
+    /**
+     * Checks if the fingerprint may have been added.
+     *
+     * @param fingerprint the fingerprint.
+     * @return false if the fingerprint has not been added for sure.
+     */
+    public boolean mightContain(long fingerprint) {
+        for (int i = 0; i < HASH_COUNT; i++) {
+            if (getCounter(index(fingerprint, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the fingerprint.
+     *
+     * @param fingerprint the fingerprint.
+     */
+    public void add(long fingerprint) {
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int index = index(fingerprint, i);
+            if (getCounter(index) < MAX_COUNTER) {
+                addCounter(index, 1);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Removes the fingerprint. Nothing is done if the filter
+     * doesn't contain the fingerprint.
+     *
+     * @param fingerprint the fingerprint.
+     */
+    public void remove(long fingerprint) {
+        if (!mightContain(fingerprint)) {
+            return;
+        }
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int index = index(fingerprint, i);
+            if (getCounter(index) < MAX_COUNTER) {
+                addCounter(index, -1);
+            }
+        }
+        size--;
+    }
+
+    /**
+     * Writes a copy of the filter.
+     *
+     * @param output the output.
+     * @throws IOException if I/O error occurred.
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(size);
+        output.writeInt(words.length);
+        for (long word : words) {
+            output.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads a filter written by {@link #write(DataOutput)}.
+     *
+     * @param input the input.
+     * @return the filter.
+     * @throws IOException if I/O error occurred.
+     */
+    public static BloomFilter read(DataInput input) throws IOException {
+        int size = input.readInt();
+        int length = input.readInt();
+        if (length <= 0 || length > Integer.MAX_VALUE / 32) {
+            throw new IOException("illegal length of a filter: " + length);
+        }
+        long[] words = new long[length];
+        for (int i = 0; i < length; i++) {
+            words[i] = input.readLong();
+        }
+        return new BloomFilter(words, size);
+    }
+
+    /**
+     * Returns a copy of the filter.
+     *
+     * @return the copy.
+     */
+    public BloomFilter copy() {
+        return new BloomFilter(words.clone(), size);
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+ * ChangeStamp is a counter shared by all instances using the same cache
+ * directory. Instances increment it after adding new entry files, so
+ * a key index knowing all entries at some value of the stamp knows all
+ * of them while the stamp keeps the value.
+ * <p/>
+ * The value is stored together with its inversion to detect torn reads.
+ * The stamp starts from a random value, so a recreated stamp doesn't
+ * repeat values of the deleted one. The stamp exists only while key
+ * indexes are used, instances don't increment a deleted stamp.
+ */
+class ChangeStamp {
+
+    private static final int MAX_READ_ATTEMPTS = 3;
+    private static final Random RANDOM = new Random();
+
+    private final File file;
+    private final LockFile lockFile;
+    private volatile boolean exists = false;
+
+    /**
+     * Creates new change stamp.
+     *
+     * @param file     the file of the stamp.
+     * @param lockFile the lock guarding increments of the stamp.
+     */
+    public ChangeStamp(File file, LockFile lockFile) {
+        this.file = file;
+        this.lockFile = lockFile;
+    }
+
+    /**
+     * Returns the value following the specified one.
+     *
+     * @param value the value.
+     * @return the next value.
+     */
+    public static long next(long value) {
+        return (value + 1) & Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks if the stamp has been created. Once it is seen the stamp
+     * is considered existing until an increment finds it deleted.
+     *
+     * @return true if the stamp exists.
+     */
+    public boolean exists() {
+        if (!exists && file.exists()) {
+            exists = true;
+        }
+        return exists;
+    }
+
+    /**
+     * Creates the stamp if it doesn't exist.
+     *
+     * @throws IOException if I/O error occurred.
+     */
+    public void create() throws IOException {
+        if (exists()) {
+            return;
+        }
+
+        lockFile.lock();
+        try {
+            if (read() < 0) {
+                write(RANDOM.nextLong() >>> 2);
+            }
+            exists = true;
+        } finally {
+            lockFile.unlock();
+        }
+    }
+
+    /**
+     * Reads the value of the stamp.
+     *
+     * @return the value or -1 if the stamp doesn't exist or cannot be read.
+     */
+    public long read() {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            try {
+                RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+                try {
+                    long value = randomAccessFile.readLong();
+                    if (value == ~randomAccessFile.readLong() && value >= 0) {
+                        return value;
+                    }
+                } finally {
+                    randomAccessFile.close();
+                }
+            } catch (FileNotFoundException e) {
+                return -1;
+            } catch (EOFException e) {
+                // the stamp is being created
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Increments the stamp if it exists.
+     *
+     * @return the value before the increment or -1 if the stamp doesn't exist.
+     * @throws IOException if I/O error occurred.
+     */
+    public long increment() throws IOException {
+        lockFile.lock();
+        try {
+            long value = read();
+            if (value < 0) {
+                exists = false;
+                return -1;
+            }
+            write(next(value));
+            return value;
+        } finally {
+            lockFile.unlock();
+        }
+    }
+
+    /**
+     * Deletes the stamp.
+     *
+     * @throws IOException if I/O error occurred.
+     */
+    public void delete() throws IOException {
+        lockFile.lock();
+        try {
+            exists = false;
+            if (!Utils.delete(file)) {
+                throw new IOException("cannot delete change stamp: " + file);
+            }
+        } finally {
+            lockFile.unlock();
+        }
+    }
+
+    // should be called holding the lock
+    private void write(long value) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.writeLong(value);
+            randomAccessFile.writeLong(~value);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+}
@@ -28,10 +28,31 @@ package com.noveogroup.android.cache.disk;
 
 import android.util.Log;
 import com.noveogroup.android.cache.io.*;
+import com.noveogroup.android.cache.memory.MemoryCache;
+import com.noveogroup.android.cache.util.Clock;
+import com.noveogroup.android.cache.util.DaemonThreadFactory;
+import com.noveogroup.android.cache.util.DefaultClock;
+import com.noveogroup.android.cache.util.Loader;
+import com.noveogroup.android.cache.util.SingleFlight;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Android Disk Cache.
@@ -110,7 +131,159 @@ public class DiskCache<K> extends DiskCacheCore<K> {
         return new DiskCache<K>(debugMode, cacheDirectory, keyManager, serializer);
     }
 
+    /**
+     * Default capacity of write-behind queue. Write-behind is off by default.
+     */
+    public static final int DEFAULT_WRITE_BEHIND_CAPACITY = -1;
+    /**
+     * Default count of threads loading values by prefetch.
+     */
+    public static final int DEFAULT_PREFETCH_PARALLELISM = 4;
+
+    /**
+     * A cache receiving values loaded by prefetch.
+     *
+     * @param <K> a type of keys.
+     * @param <V> a type of values.
+     * @see #prefetch(Collection, Serializer, PrefetchTarget, int)
+     */
+    public static interface PrefetchTarget<K, V> {
+
+        /**
+         * Returns free space of the cache.
+         *
+         * @return the free space or {@link Long#MAX_VALUE} if the size is not limited.
+         */
+        public long getFreeSize();
+
+        /**
+         * Checks if the cache already contains a value of the key.
+         *
+         * @param key the key.
+         * @return true if the value exists.
+         */
+        public boolean contains(K key);
+
+        /**
+         * Returns size of the value as it is counted by the cache.
+         *
+         * @param value the value.
+         * @return the size of the value.
+         */
+        public long sizeOf(V value);
+
+        /**
+         * Puts a loaded value to the cache if the key doesn't refer any value yet.
+         *
+         * @param key   the key.
+         * @param value the value.
+         * @return true if the value has been put.
+         */
+        public boolean putIfAbsent(K key, V value);
+
+    }
+
+    private static class PrefetchFuture implements Future<Integer> {
+
+        private final List<Future<Integer>> futures;
+        private final AtomicBoolean stopped;
+
+        public PrefetchFuture(List<Future<Integer>> futures, AtomicBoolean stopped) {
+            this.futures = futures;
+            this.stopped = stopped;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            stopped.set(true);
+            boolean cancelled = false;
+            for (Future<Integer> future : futures) {
+                cancelled |= future.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            for (Future<Integer> future : futures) {
+                if (future.isCancelled()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            for (Future<Integer> future : futures) {
+                if (!future.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Integer get() throws InterruptedException, ExecutionException {
+            int count = 0;
+            for (Future<Integer> future : futures) {
+                count += future.get();
+            }
+            return count;
+        }
+
+        @Override
+        public Integer get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            int count = 0;
+            for (Future<Integer> future : futures) {
+                count += future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            return count;
+        }
+
+    }
+
+    private static class PendingPut {
+
+        private final Object value;
+        private final Serializer<Object> valueSerializer;
+        private final boolean replaceMetaData;
+        private final MetaData metaData;
+        private final long time;
+        private final long timeToLive;
+
+        @SuppressWarnings("unchecked")
+        public PendingPut(Object value, Serializer<?> valueSerializer, boolean replaceMetaData, MetaData metaData,
+                          long time, long timeToLive) {
+            this.value = value;
+            this.valueSerializer = (Serializer<Object>) valueSerializer;
+            this.replaceMetaData = replaceMetaData;
+            this.metaData = metaData;
+            this.time = time;
+            this.timeToLive = timeToLive;
+        }
+
+        public PendingPut merge(PendingPut previous) {
+            // keep meta data of the previous put if this one doesn't replace it
+            if (replaceMetaData || !previous.replaceMetaData) {
+                return this;
+            } else {
+                return new PendingPut(value, valueSerializer, true, previous.metaData, time, timeToLive);
+            }
+        }
+
+        public boolean isExpired(long currentTime) {
+            return timeToLive >= 0 && currentTime > time + timeToLive;
+        }
+
+    }
+
     private volatile boolean verbose;
+    private final SingleFlight<K, Object> singleFlight;
+    private volatile Executor refreshExecutor;
+    private volatile int writeBehindCapacity = DEFAULT_WRITE_BEHIND_CAPACITY;
+    private final WriteBehindQueue<K, PendingPut> writeBehindQueue;
 
     /**
      * Creates new disk cache instance.
@@ -121,8 +294,34 @@ public class DiskCache<K> extends DiskCacheCore<K> {
      * @param serializer     a key serializer.
      */
     public DiskCache(boolean debugMode, File cacheDirectory, KeyManager<K> keyManager, Serializer<K> serializer) {
-        super(debugMode, cacheDirectory, keyManager, serializer);
+        this(debugMode, cacheDirectory, keyManager, serializer, new DefaultClock());
+    }
+
+    /**
+     * Creates new disk cache instance.
+     *
+     * @param debugMode      true if debug mode is on.
+     * @param cacheDirectory the cache directory.
+     * @param keyManager     a key manager.
+     * @param serializer     a key serializer.
+     * @param clock          a clock to timestamp entries.
+     */
+    public DiskCache(boolean debugMode, File cacheDirectory, KeyManager<K> keyManager, Serializer<K> serializer, Clock clock) {
+        super(debugMode, cacheDirectory, keyManager, serializer, clock);
         this.verbose = debugMode;
+        this.singleFlight = new SingleFlight<K, Object>(keyManager);
+        this.writeBehindQueue = new WriteBehindQueue<K, PendingPut>(keyManager,
+                new DaemonThreadFactory(DiskCache.TAG + "-writer")) {
+            @Override
+            protected void write(K key, PendingPut item) {
+                DiskCache.this.write(key, item);
+            }
+
+            @Override
+            protected PendingPut merge(PendingPut previous, PendingPut next) {
+                return next.merge(previous);
+            }
+        };
     }
 
     /**
@@ -143,6 +342,117 @@ public class DiskCache<K> extends DiskCacheCore<K> {
         this.verbose = verbose;
     }
 
+    /**
+     * Returns an executor used to refresh values in background.
+     *
+     * @return the executor.
+     * @see #setRefreshAheadTime(long)
+     */
+    public Executor getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            synchronized (singleFlight) {
+                if (refreshExecutor == null) {
+                    refreshExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory(DiskCache.TAG + "-refresh"));
+                }
+            }
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * Sets an executor used to refresh values in background.
+     *
+     * @param refreshExecutor new executor.
+     */
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        if (refreshExecutor == null) {
+            throw new NullPointerException();
+        }
+
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Returns capacity of write-behind queue.
+     *
+     * @return max count of pending puts.
+     * @see #setWriteBehindCapacity(int)
+     */
+    public int getWriteBehindCapacity() {
+        return writeBehindCapacity;
+    }
+
+    /**
+     * Sets capacity of write-behind queue.
+     * <p/>
+     * If the capacity is positive, put methods add values to an in-memory
+     * queue and return immediately. Values are serialized and committed
+     * by a background thread. Puts of the same key replace the pending
+     * value, so only the last value is written. If the queue is full
+     * a put waits for free space.
+     * <p/>
+     * Values stored in the queue are returned by get methods as they are,
+     * without serialization, so they should not be modified after put.
+     * Methods of {@link DiskCacheCore} such as {@link #search(Object)}
+     * see the values only after they are written.
+     * <p/>
+     * Zero or negative value turns write-behind off. Pending values
+     * are written before the method returns in that case.
+     *
+     * @param writeBehindCapacity new capacity of the queue.
+     * @see #flush()
+     */
+    public void setWriteBehindCapacity(int writeBehindCapacity) {
+        this.writeBehindCapacity = writeBehindCapacity;
+        if (writeBehindCapacity <= 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Returns count of values waiting in write-behind queue.
+     *
+     * @return count of pending puts.
+     */
+    public int getPendingWriteCount() {
+        return writeBehindQueue.size();
+    }
+
+    /**
+     * Waits until all values put before the call are written.
+     */
+    public void flush() {
+        writeBehindQueue.flush();
+    }
+
+    /**
+     * Erases the cache. Values waiting in write-behind queue are dropped.
+     */
+    @Override
+    public void erase() {
+        writeBehindQueue.clear();
+        super.erase();
+    }
+
+    private PendingPut getPendingPut(K key) {
+        PendingPut put = writeBehindQueue.peek(key);
+        return put == null || put.isExpired(getClock().currentTimeMillis()) ? null : put;
+    }
+
+    // writes pending value of the key to make the entry up to date
+    private void writePendingPut(K key) {
+        if (writeBehindQueue.isUsed()) {
+            PendingPut put = writeBehindQueue.claim(key);
+            try {
+                if (put != null) {
+                    write(key, put);
+                }
+            } finally {
+                writeBehindQueue.release(key, put);
+            }
+        }
+    }
+
     /**
      * Checks if the cache contains an entry corresponding
      * to the specified key.
@@ -151,7 +461,7 @@ public class DiskCache<K> extends DiskCacheCore<K> {
      * @return true if the entry exists.
      */
     public boolean contains(K key) {
-        return search(key) != null;
+        return getPendingPut(key) != null || search(key) != null;
     }
 
     /**
@@ -161,6 +471,20 @@ public class DiskCache<K> extends DiskCacheCore<K> {
      * @return true is the entry is successfully removed.
      */
     public boolean remove(K key) {
+        if (!writeBehindQueue.isUsed()) {
+            return removeEntry(key);
+        }
+
+        // drop the pending value and prevent writes during removal
+        PendingPut put = writeBehindQueue.claim(key);
+        try {
+            return removeEntry(key) || put != null;
+        } finally {
+            writeBehindQueue.release(key, put);
+        }
+    }
+
+    private boolean removeEntry(K key) {
         Entry<K> entry = entry(key);
         if (entry == null) {
             return false;
@@ -179,6 +503,37 @@ public class DiskCache<K> extends DiskCacheCore<K> {
         }
     }
 
+    /**
+     * Removes all entries having the value of the meta data field.
+     * Pending values are written before the search.
+     * <p/>
+     * It takes time proportional to count of removed entries if the field
+     * is indexed, otherwise all entries of the cache are read.
+     *
+     * @param field the meta data field.
+     * @param value the value of the field.
+     * @return count of removed entries.
+     * @see #setIndexedFields(java.util.Set)
+     */
+    public int removeWhere(String field, Serializable value) {
+        flush();
+
+        int count = 0;
+        for (Entry<K> entry : searchWhere(field, value)) {
+            try {
+                Utils.delete(entry.getFile());
+                entry.remove();
+                count++;
+            } catch (IOException e) {
+                Log.w(DiskCache.TAG, "cannot remove an entry", e);
+                if (verbose) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        return count;
+    }
+
     private <K> boolean commitEntry(Entry<K> entry) {
         try {
             entry.access();
@@ -200,6 +555,7 @@ public class DiskCache<K> extends DiskCacheCore<K> {
      * @return the meta data.
      */
     public MetaData getMetaData(K key) {
+        writePendingPut(key);
         Entry<K> entry = entry(key);
         if (entry.exists()) {
             commitEntry(entry);
@@ -215,6 +571,7 @@ public class DiskCache<K> extends DiskCacheCore<K> {
      * @param metaData the meta data.
      */
     public void putMetaData(K key, MetaData metaData) {
+        writePendingPut(key);
         Entry<K> entry = entry(key);
         entry.setMetaData(metaData);
         commitEntry(entry);
@@ -229,8 +586,15 @@ public class DiskCache<K> extends DiskCacheCore<K> {
      * @param <V>             a type of the value.
      * @return the value.
      */
+    @SuppressWarnings("unchecked")
     public <V> V get(K key, Serializer<V> valueSerializer) {
-        Entry<K> entry = search(key);
+        PendingPut put = getPendingPut(key);
+        V value = put != null ? (V) put.value : load(search(key), valueSerializer);
+        getStatsCounter().recordRequest(value != null);
+        return value;
+    }
+
+    private <V> V load(Entry<K> entry, Serializer<V> valueSerializer) {
         if (entry == null) {
             return null;
         } else {
@@ -245,7 +609,11 @@ public class DiskCache<K> extends DiskCacheCore<K> {
 
             try {
                 FileSource source = new FileSource(file);
-                return valueSerializer.load(source);
+                V value = valueSerializer.load(source);
+                if (isStatsEnabled()) {
+                    getStatsCounter().recordBytesRead(file.length());
+                }
+                return value;
             } catch (IOException e) {
                 Log.w(DiskCache.TAG, "cannot load an entry", e);
                 if (verbose) {
@@ -270,20 +638,312 @@ public class DiskCache<K> extends DiskCacheCore<K> {
     }
 
     /**
-     * Saves an entry to the cache. The key will be linked to the specified
-     * value. The value will be saved using the specified serializer.
+     * Loads a value from the file that is corresponding to the specified key.
+     * If the value is missing it will be computed by the specified loader
+     * and saved to the cache using the specified serializer.
+     * <p/>
+     * Concurrent loads of the same key are coalesced: only one loader
+     * is called and other callers wait for its result.
+     * <p/>
+     * If the entry has been put with time to live and is close to its
+     * deadline, or it is older than refresh-after time, the loader will
+     * be called in background to refresh the value. The current value is
+     * returned until the new one is committed.
      *
      * @param key             the key.
-     * @param value           the value
      * @param valueSerializer the value serializer.
+     * @param loader          the loader.
      * @param <V>             a type of the value.
+     * @return the value.
+     * @throws ExecutionException if the loader has thrown an exception.
+     * @see #setRefreshAheadTime(long)
+     * @see #setRefreshAfterTime(long)
      */
-    public <V> void put(K key, V value, Serializer<V> valueSerializer) {
+    @SuppressWarnings("unchecked")
+    public <V> V get(K key, final Serializer<V> valueSerializer, final Loader<K, V> loader) throws ExecutionException {
+        PendingPut put = getPendingPut(key);
+        if (put != null) {
+            getStatsCounter().recordRequest(true);
+            return (V) put.value;
+        }
+
+        Entry<K> entry = search(key);
+        V value = load(entry, valueSerializer);
+        getStatsCounter().recordRequest(value != null);
+        if (value != null) {
+            if (isRefreshNeeded(entry)) {
+                refresh(key, valueSerializer, loader);
+            }
+            return value;
+        }
+
+        return (V) singleFlight.load(key, new Loader<K, Object>() {
+            @Override
+            public Object load(K key) throws Exception {
+                // the value could be loaded by a previous flight
+                PendingPut put = getPendingPut(key);
+                if (put != null) {
+                    return put.value;
+                }
+                V value = DiskCache.this.load(search(key), valueSerializer);
+                if (value == null) {
+                    value = DiskCache.this.load(key, loader);
+                    if (value != null) {
+                        put(key, value, valueSerializer);
+                    }
+                }
+                return value;
+            }
+        });
+    }
+
+    /**
+     * Loads values of the keys in background and puts them to the memory cache.
+     *
+     * @param keys            the keys.
+     * @param valueSerializer the value serializer.
+     * @param memoryCache     the memory cache.
+     * @param <V>             a type of the values.
+     * @return the future count of values put to the memory cache.
+     * @see #prefetch(Collection, Serializer, MemoryCache, int)
+     */
+    public <V> Future<Integer> prefetch(Collection<K> keys, Serializer<V> valueSerializer, MemoryCache<K, V> memoryCache) {
+        return prefetch(keys, valueSerializer, memoryCache, DEFAULT_PREFETCH_PARALLELISM);
+    }
+
+    /**
+     * Loads values of the keys in background and puts them to the memory cache.
+     * <p/>
+     * Keys are grouped by their entry directories and the groups are loaded
+     * in order of the directories by the specified count of threads, so each
+     * directory is usually listed by one thread only. Keys already contained
+     * in the memory cache are skipped and values put to the memory cache
+     * concurrently are not replaced.
+     * <p/>
+     * Loading stops when loaded values would exceed free space of the memory
+     * cache that was available when the prefetch started. Cancel the returned
+     * future to stop loading earlier.
+     *
+     * @param keys            the keys.
+     * @param valueSerializer the value serializer.
+     * @param memoryCache     the memory cache.
+     * @param parallelism     count of threads loading the values.
+     * @param <V>             a type of the values.
+     * @return the future count of values put to the memory cache.
+     * @see MemoryCache#getMaxSize()
+     */
+    public <V> Future<Integer> prefetch(Collection<K> keys, Serializer<V> valueSerializer,
+                                        final MemoryCache<K, V> memoryCache, int parallelism) {
+        return prefetch(keys, valueSerializer, new PrefetchTarget<K, V>() {
+            @Override
+            public long getFreeSize() {
+                long maxSize = memoryCache.getMaxSize();
+                return maxSize < 0 ? Long.MAX_VALUE : maxSize - memoryCache.size();
+            }
+
+            @Override
+            public boolean contains(K key) {
+                return memoryCache.contains(key);
+            }
+
+            @Override
+            public long sizeOf(V value) {
+                return memoryCache.sizeOf(value);
+            }
+
+            @Override
+            public boolean putIfAbsent(K key, V value) {
+                return memoryCache.putIfAbsent(key, value);
+            }
+        }, parallelism);
+    }
+
+    /**
+     * Loads values of the keys in background and puts them to the target cache.
+     * It works as {@link #prefetch(Collection, Serializer, MemoryCache, int)}
+     * but lets the target decide whether a loaded value can be put.
+     *
+     * @param keys            the keys.
+     * @param valueSerializer the value serializer.
+     * @param target          the target cache.
+     * @param parallelism     count of threads loading the values.
+     * @param <V>             a type of the values.
+     * @return the future count of values put to the target cache.
+     */
+    public <V> Future<Integer> prefetch(Collection<K> keys, final Serializer<V> valueSerializer,
+                                        final PrefetchTarget<K, V> target, int parallelism) {
+        // sort the keys by their directories
+        Map<String, List<K>> groups = new TreeMap<String, List<K>>();
+        for (K key : keys) {
+            String directory = getEntryDirectory(key).getPath();
+            List<K> group = groups.get(directory);
+            if (group == null) {
+                group = new ArrayList<K>();
+                groups.put(directory, group);
+            }
+            group.add(key);
+        }
+        List<K> sortedKeys = new ArrayList<K>(keys.size());
+        for (List<K> group : groups.values()) {
+            sortedKeys.addAll(group);
+        }
+
+        final AtomicLong budget = new AtomicLong(target.getFreeSize());
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+
+        // split the keys into contiguous parts
+        int threadCount = Math.max(1, Math.min(parallelism, sortedKeys.size()));
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount,
+                new DaemonThreadFactory(DiskCache.TAG + "-prefetch", Thread.MIN_PRIORITY));
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                final List<K> part = sortedKeys.subList(
+                        i * sortedKeys.size() / threadCount,
+                        (i + 1) * sortedKeys.size() / threadCount);
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return prefetch(part, valueSerializer, target, budget, stopped);
+                    }
+                }));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return new PrefetchFuture(futures, stopped);
+    }
+
+    private <V> int prefetch(List<K> keys, Serializer<V> valueSerializer, PrefetchTarget<K, V> target,
+                             AtomicLong budget, AtomicBoolean stopped) {
+        int count = 0;
+        for (K key : keys) {
+            if (stopped.get() || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (target.contains(key)) {
+                continue;
+            }
+
+            V value = get(key, valueSerializer);
+            if (value == null) {
+                continue;
+            }
+            if (budget.addAndGet(-target.sizeOf(value)) < 0) {
+                stopped.set(true);
+                break;
+            }
+            if (target.putIfAbsent(key, value)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private <V> V load(K key, Loader<K, V> loader) throws Exception {
+        long time = System.nanoTime();
+        boolean success = false;
+        try {
+            V value = loader.load(key);
+            success = true;
+            return value;
+        } finally {
+            getStatsCounter().recordLoad(success, System.nanoTime() - time);
+        }
+    }
+
+    private boolean isRefreshNeeded(Entry<K> entry) {
+        long time = getClock().currentTimeMillis();
+        if (entry.getDeadline() >= 0) {
+            long refreshAheadTime = getRefreshAheadTime();
+            return refreshAheadTime >= 0 && time > entry.getDeadline() - refreshAheadTime;
+        }
+        long refreshAfterTime = getRefreshAfterTime();
+        return refreshAfterTime >= 0 && time - entry.getCreateTime() > refreshAfterTime;
+    }
+
+    private <V> void refresh(final K key, final Serializer<V> valueSerializer, final Loader<K, V> loader) {
+        if (singleFlight.isLoading(key)) {
+            return;
+        }
+
+        getRefreshExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    singleFlight.load(key, new Loader<K, Object>() {
+                        @Override
+                        public Object load(K key) throws Exception {
+                            // the value could be refreshed by a previous flight
+                            Entry<K> entry = search(key);
+                            V value = DiskCache.this.load(entry, valueSerializer);
+                            if (value == null || isRefreshNeeded(entry)) {
+                                V newValue = DiskCache.this.load(key, loader);
+                                if (newValue != null) {
+                                    long timeToLive = entry != null && entry.getDeadline() >= 0
+                                            ? entry.getDeadline() - entry.getCreateTime() : -1;
+                                    put(key, newValue, valueSerializer, timeToLive);
+                                    value = newValue;
+                                }
+                            }
+                            return value;
+                        }
+                    });
+                } catch (ExecutionException e) {
+                    // keep the current value, it will be refreshed on next access
+                    Log.w(DiskCache.TAG, "cannot refresh a value", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads a value from the file that is corresponding to the specified key.
+     * If the value is missing it will be computed by the specified loader
+     * and saved to the cache using default serializer.
+     *
+     * @param key    the key.
+     * @param loader the loader.
+     * @param <V>    a type of the value.
+     * @return the value.
+     * @throws ExecutionException if the loader has thrown an exception.
+     * @see #get(Object, Serializer, Loader)
+     */
+    public <V extends Serializable> V get(K key, Loader<K, V> loader) throws ExecutionException {
+        return get(key, new DefaultSerializer<V>(), loader);
+    }
+
+    private <V> void put(K key, V value, boolean replaceMetaData, MetaData metaData,
+                         Serializer<V> valueSerializer, long timeToLive) {
+        PendingPut put = new PendingPut(value, valueSerializer, replaceMetaData, metaData,
+                getClock().currentTimeMillis(), timeToLive);
+
+        // add the value to write-behind queue
+        int capacity = writeBehindCapacity;
+        if (capacity > 0 && writeBehindQueue.offer(key, put, capacity)) {
+            return;
+        }
+
+        // write the value replacing a pending one
+        if (writeBehindQueue.isUsed()) {
+            PendingPut previous = writeBehindQueue.claim(key);
+            try {
+                write(key, previous == null ? put : put.merge(previous));
+            } finally {
+                writeBehindQueue.release(key, previous);
+            }
+        } else {
+            write(key, put);
+        }
+    }
+
+    private void write(K key, PendingPut put) {
         File file;
         try {
             file = createFile();
             FileSource source = new FileSource(file);
-            valueSerializer.save(source, value);
+            put.valueSerializer.save(source, put.value);
+            getStatsCounter().recordPut();
         } catch (IOException e) {
             Log.w(DiskCache.TAG, "cannot save a value", e);
             if (verbose) {
@@ -293,10 +953,47 @@ public class DiskCache<K> extends DiskCacheCore<K> {
         }
 
         Entry<K> entry = entry(key);
+        entry.setCreateTime(put.time);
+        entry.setDeadline(put.timeToLive < 0 ? Entry.NO_DEADLINE : put.time + put.timeToLive);
         entry.setFile(file);
+        if (isStatsEnabled()) {
+            getStatsCounter().recordBytesWritten(entry.getValueSize());
+        }
+        if (put.replaceMetaData) {
+            entry.setMetaData(put.metaData);
+        }
         commitEntry(entry);
     }
 
+    /**
+     * Saves an entry to the cache. The key will be linked to the specified
+     * value. The value will be saved using the specified serializer.
+     *
+     * @param key             the key.
+     * @param value           the value
+     * @param valueSerializer the value serializer.
+     * @param <V>             a type of the value.
+     */
+    public <V> void put(K key, V value, Serializer<V> valueSerializer) {
+        put(key, value, false, null, valueSerializer, -1);
+    }
+
+    /**
+     * Saves an entry to the cache. The key will be linked to the specified
+     * value. The value will be saved using the specified serializer.
+     * The entry will expire after the specified time to live.
+     *
+     * @param key             the key.
+     * @param value           the value
+     * @param valueSerializer the value serializer.
+     * @param timeToLive      the time to live in milliseconds.
+     *                        Negative value means the entry never expires.
+     * @param <V>             a type of the value.
+     */
+    public <V> void put(K key, V value, Serializer<V> valueSerializer, long timeToLive) {
+        put(key, value, false, null, valueSerializer, timeToLive);
+    }
+
     /**
      * Saves an entry to the cache. The key will be linked to the specified
      * value. The value will be saved using default serializer.
@@ -309,6 +1006,21 @@ public class DiskCache<K> extends DiskCacheCore<K> {
         put(key, value, null, new DefaultSerializer<V>());
     }
 
+    /**
+     * Saves an entry to the cache. The key will be linked to the specified
+     * value. The value will be saved using default serializer.
+     * The entry will expire after the specified time to live.
+     *
+     * @param key        the key.
+     * @param value      the value
+     * @param timeToLive the time to live in milliseconds.
+     *                   Negative value means the entry never expires.
+     * @param <V>        a type of the value.
+     */
+    public <V extends Serializable> void put(K key, V value, long timeToLive) {
+        put(key, value, null, new DefaultSerializer<V>(), timeToLive);
+    }
+
     /**
      * Saves an entry to the cache. The key will be linked to the specified
      * value and meta data. The value will be saved using the specified
@@ -321,23 +1033,24 @@ public class DiskCache<K> extends DiskCacheCore<K> {
      * @param <V>             a type of the value.
      */
     public <V> void put(K key, V value, MetaData metaData, Serializer<V> valueSerializer) {
-        File file;
-        try {
-            file = createFile();
-            FileSource source = new FileSource(file);
-            valueSerializer.save(source, value);
-        } catch (IOException e) {
-            Log.w(DiskCache.TAG, "cannot save a value", e);
-            if (verbose) {
-                throw new RuntimeException(e);
-            }
-            return;
-        }
+        put(key, value, true, metaData, valueSerializer, -1);
+    }
 
-        Entry<K> entry = entry(key);
-        entry.setFile(file);
-        entry.setMetaData(metaData);
-        commitEntry(entry);
+    /**
+     * Saves an entry to the cache. The key will be linked to the specified
+     * value and meta data. The value will be saved using the specified
+     * serializer. The entry will expire after the specified time to live.
+     *
+     * @param key             the key.
+     * @param value           the value
+     * @param metaData        the meta data.
+     * @param valueSerializer the value serializer.
+     * @param timeToLive      the time to live in milliseconds.
+     *                        Negative value means the entry never expires.
+     * @param <V>             a type of the value.
+     */
+    public <V> void put(K key, V value, MetaData metaData, Serializer<V> valueSerializer, long timeToLive) {
+        put(key, value, true, metaData, valueSerializer, timeToLive);
     }
 
     /**
@@ -353,4 +1066,20 @@ public class DiskCache<K> extends DiskCacheCore<K> {
         put(key, value, metaData, new DefaultSerializer<V>());
     }
 
+    /**
+     * Saves an entry to the cache. The key will be linked to the specified
+     * value and meta data. The value will be saved using default serializer.
+     * The entry will expire after the specified time to live.
+     *
+     * @param key        the key.
+     * @param value      the value
+     * @param metaData   the meta data.
+     * @param timeToLive the time to live in milliseconds.
+     *                   Negative value means the entry never expires.
+     * @param <V>        a type of the value.
+     */
+    public <V extends Serializable> void put(K key, V value, MetaData metaData, long timeToLive) {
+        put(key, value, metaData, new DefaultSerializer<V>(), timeToLive);
+    }
+
 }
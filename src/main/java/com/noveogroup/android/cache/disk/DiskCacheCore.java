@@ -31,16 +31,40 @@ import android.util.Log;
 import com.noveogroup.android.cache.io.KeyManager;
 import com.noveogroup.android.cache.io.Serializer;
 import com.noveogroup.android.cache.util.AbstractBackgroundCleaner;
+import com.noveogroup.android.cache.util.CacheStats;
 import com.noveogroup.android.cache.util.CleanerHelper;
+import com.noveogroup.android.cache.util.Clock;
+import com.noveogroup.android.cache.util.DaemonThreadFactory;
+import com.noveogroup.android.cache.util.DefaultClock;
+import com.noveogroup.android.cache.util.StatsCounter;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Disk Cache Core.
+ * <p/>
+ * Several instances (also of different processes) may use the same cache
+ * directory. Settings and the time of the last cleaning are shared through
+ * a file in the cache directory and only one instance cleans the cache at
+ * a time. Indexes of keys are kept by each instance separately and are
+ * trusted only until another instance adds an entry, see
+ * {@link #setKeyIndexEnabled(boolean)}.
  */
 public class DiskCacheCore<K> {
 
@@ -49,8 +73,48 @@ public class DiskCacheCore<K> {
      */
     public static final String TAG = "NoveoDiskCache";
 
+    /**
+     * Durability of commits of entries.
+     */
+    public static enum Durability {
+
+        /**
+         * Files are never synced. Committed entries may be lost or
+         * be broken after a crash of the system.
+         */
+        NONE,
+
+        /**
+         * Files are synced in a background thread after commit.
+         * Entries committed shortly before a crash may be lost or broken.
+         */
+        ASYNC,
+
+        /**
+         * Files are synced by each commit before the entry becomes visible.
+         */
+        PER_COMMIT,
+
+        /**
+         * Files of concurrent commits are synced together by background
+         * threads and each commit waits for its files to be synced before
+         * the entry becomes visible. Commits arrived while a batch is being
+         * synced make up the next batch, they are not delayed by the group
+         * commit window.
+         */
+        GROUP_COMMIT
+
+    }
+
     private static final String SUBDIRECTORY_META_DATA = "meta-data";
     private static final String SUBDIRECTORY_STORAGE = "storage";
+    private static final String FILE_KEY_INDEX = "key-index";
+    private static final String FILE_KEY_INDEX_STAMP = "key-index.stamp";
+    private static final String FILE_KEY_INDEX_STAMP_LOCK = "key-index.stamp.lock";
+    private static final String SUBDIRECTORY_FIELD_INDEX = "field-index";
+    private static final String FILE_SETTINGS = "settings";
+    private static final String FILE_SETTINGS_LOCK = "settings.lock";
+    private static final String FILE_CLEAN_LOCK = "clean.lock";
 
     private static final long DEBUG_TIMEOUT = 250;
     private static final float DEBUG_CLEAN_PROBABILITY = 0.1f;
@@ -75,12 +139,224 @@ public class DiskCacheCore<K> {
      * Default value of expiration time.
      */
     public static final long DEFAULT_EXPIRATION_TIME = 12 * 60 * 60 * 1000L;
+    /**
+     * Default value of refresh-ahead time.
+     */
+    public static final long DEFAULT_REFRESH_AHEAD_TIME = -1;
+    /**
+     * Default value of refresh-after time.
+     */
+    public static final long DEFAULT_REFRESH_AFTER_TIME = -1;
+    /**
+     * Default count of levels of entry directories.
+     * Negative value means one directory per key hash code.
+     */
+    public static final int DEFAULT_FAN_OUT_LEVELS = -1;
+    /**
+     * Maximum count of levels of entry directories.
+     */
+    public static final int MAX_FAN_OUT_LEVELS = 4;
+    /**
+     * Default parallelism of directory scans. Scans are sequential by default.
+     */
+    public static final int DEFAULT_SCAN_PARALLELISM = 1;
+    /**
+     * Default durability of commits.
+     */
+    public static final Durability DEFAULT_DURABILITY = Durability.NONE;
+    /**
+     * Default value of group commit window.
+     */
+    public static final long DEFAULT_GROUP_COMMIT_WINDOW = 5;
+    /**
+     * Default status of the key index.
+     */
+    public static final boolean DEFAULT_KEY_INDEX_ENABLED = false;
+    /**
+     * Default value of clean jitter.
+     */
+    public static final long DEFAULT_CLEAN_JITTER = 60 * 1000;
+
+    /**
+     * Header fields of an entry which are read without loading
+     * its key and meta data.
+     *
+     * @see EntryFilter
+     */
+    public static final class EntryHeader {
+
+        private final long createTime;
+        private final long accessTime;
+        private final long deadline;
+        private final long valueSize;
+
+        EntryHeader(long createTime, long accessTime, long deadline, long valueSize) {
+            this.createTime = createTime;
+            this.accessTime = accessTime;
+            this.deadline = deadline;
+            this.valueSize = valueSize;
+        }
+
+        /**
+         * Returns create time of the entry.
+         *
+         * @return the create time.
+         */
+        public long getCreateTime() {
+            return createTime;
+        }
+
+        /**
+         * Returns last access time of the entry.
+         *
+         * @return the access time.
+         */
+        public long getAccessTime() {
+            return accessTime;
+        }
+
+        /**
+         * Returns deadline of the entry.
+         *
+         * @return the deadline or {@link Entry#NO_DEADLINE}.
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Returns size of the value file of the entry.
+         *
+         * @return the size in bytes or 0 if the entry has no file.
+         */
+        public long getValueSize() {
+            return valueSize;
+        }
+
+    }
+
+    /**
+     * Filter of entries by their header fields.
+     *
+     * @see #entries(EntryFilter)
+     * @see #keys(EntryFilter)
+     */
+    public interface EntryFilter {
+
+        /**
+         * Checks if an entry should be returned.
+         *
+         * @param header the header of the entry.
+         * @return true if the entry is accepted.
+         */
+        boolean accept(EntryHeader header);
+
+    }
+
+    private static class Listing {
+
+        private final File[] files;
+        private int position = 0;
+
+        public Listing(File[] files) {
+            this.files = files;
+        }
+
+    }
+
+    /**
+     * Walks entry directories depth first keeping only listings
+     * of the directories on the current path.
+     */
+    private abstract class EntryWalker<T> implements Iterator<T> {
+
+        private final EntryFilter filter;
+        private final List<Listing> listings = new ArrayList<Listing>();
+        private final byte[] buffer = new byte[DiskCacheEntry.MATCH_HEADER_SIZE];
+        private T next = null;
+
+        public EntryWalker(EntryFilter filter) {
+            this.filter = filter;
+            push(metaDataDirectory);
+        }
+
+        private void push(File directory) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                listings.add(new Listing(files));
+            }
+        }
+
+        protected abstract T load(File file, Entry<K> entry) throws IOException;
+
+        private T read(File file) {
+            try {
+                // entries having no full header are loaded to check them
+                Entry<K> entry = null;
+                EntryHeader header = DiskCacheEntry.readHeader(file, buffer);
+                if (header == null) {
+                    entry = new Entry<K>(DiskCacheCore.this, file);
+                    header = new EntryHeader(entry.getCreateTime(), entry.getAccessTime(),
+                            entry.getDeadline(), entry.getValueSize());
+                }
+
+                long deadline = header.getDeadline();
+                if (deadline >= 0 && clock.currentTimeMillis() > deadline) {
+                    return null;
+                }
+                if (filter != null && !filter.accept(header)) {
+                    return null;
+                }
+                return load(file, entry);
+            } catch (IOException e) {
+                // the entry is being written or removed
+                Log.v(DiskCacheCore.TAG, "cannot read an entry", e);
+                return null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !listings.isEmpty()) {
+                Listing listing = listings.get(listings.size() - 1);
+                if (listing.position >= listing.files.length) {
+                    listings.remove(listings.size() - 1);
+                    continue;
+                }
+
+                File file = listing.files[listing.position];
+                listing.files[listing.position++] = null;
+                if (file.isDirectory()) {
+                    push(file);
+                } else {
+                    next = read(file);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T value = next;
+            next = null;
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
 
     private class FileItem extends CleanerHelper.Item<File> {
 
         public FileItem(File file) {
             super(file,
-                    System.currentTimeMillis() - file.lastModified(),
+                    clock.currentTimeMillis() - file.lastModified(),
                     Utils.calculateSize(file));
         }
 
@@ -105,12 +381,19 @@ public class DiskCacheCore<K> {
 
         public EntryItem(Entry<K> entry) {
             super(entry,
-                    System.currentTimeMillis() - entry.getAccessTime(),
+                    clock.currentTimeMillis() - entry.getAccessTime(),
                     Utils.calculateSize(entry.entryFile) + Utils.calculateSize(entry.getFile()));
         }
 
         @Override
         public void delete() {
+            if (source.isExpired()) {
+                statsCounter.recordEviction(CacheStats.EvictionReason.EXPIRATION);
+            } else if (getMaxAge() >= 0 && age > getMaxAge()) {
+                statsCounter.recordEviction(CacheStats.EvictionReason.MAX_AGE);
+            } else {
+                statsCounter.recordEviction(CacheStats.EvictionReason.SIZE);
+            }
             try {
                 source.remove();
             } catch (IOException e) {
@@ -120,18 +403,22 @@ public class DiskCacheCore<K> {
 
         @Override
         public boolean canDelete() {
-            return age < 0 || age > getExpirationTime();
+            return age < 0 || age > getExpirationTime() || source.isExpired();
         }
 
         @Override
         public boolean shouldDelete() {
-            return getMaxAge() >= 0 && age > getMaxAge();
+            return (getMaxAge() >= 0 && age > getMaxAge()) || source.isExpired();
         }
 
     }
 
     private class Cleaner extends AbstractBackgroundCleaner {
 
+        public Cleaner(Clock clock) {
+            super(clock);
+        }
+
         private List<File> getProtectedFileList(List<EntryItem> entryList) {
             List<File> protectedFileList = new ArrayList<File>(entryList.size());
             for (EntryItem item : entryList) {
@@ -143,15 +430,169 @@ public class DiskCacheCore<K> {
             return protectedFileList;
         }
 
+        /**
+         * Lists files of the directory recursively. Subdirectories are split into
+         * partitions which are listed in parallel if the executor is not null.
+         */
+        private List<List<File>> listFiles(File directory, ExecutorService executor, int parallelism) {
+            List<List<File>> partitions = new ArrayList<List<File>>();
+            if (executor == null) {
+                partitions.add(Utils.listFiles(directory, true));
+                return partitions;
+            }
+
+            File[] children = directory.listFiles();
+            if (children == null) {
+                return partitions;
+            }
+
+            List<Future<List<File>>> futures = new ArrayList<Future<List<File>>>(parallelism);
+            for (int i = 0; i < parallelism; i++) {
+                final List<File> part = new ArrayList<File>(children.length / parallelism + 1);
+                for (int j = i; j < children.length; j += parallelism) {
+                    part.add(children[j]);
+                }
+                futures.add(executor.submit(new Callable<List<File>>() {
+                    @Override
+                    public List<File> call() {
+                        List<File> files = new ArrayList<File>();
+                        for (File child : part) {
+                            files.addAll(Utils.listFiles(child, true));
+                        }
+                        return files;
+                    }
+                }));
+            }
+            for (Future<List<File>> future : futures) {
+                partitions.add(CleanerHelper.getResult(future));
+            }
+            return partitions;
+        }
+
+        private int size(List<List<File>> partitions) {
+            int size = 0;
+            for (List<File> partition : partitions) {
+                size += partition.size();
+            }
+            return size;
+        }
+
+        @Override
+        protected long getCleanJitter() {
+            return DiskCacheCore.this.getCleanJitter();
+        }
+
+        // checks if another instance has cleaned the cache recently
+        private boolean isCleanedByOther() {
+            propertyManager.reload();
+            long lastCleanTime = propertyManager.getLastCleanTime(-1);
+            String lastCleaner = propertyManager.getLastCleaner(null);
+            long age = clock.currentTimeMillis() - lastCleanTime;
+            return lastCleanTime >= 0 && !instanceId.equals(lastCleaner) && age >= 0 && age < getCleanTimeDelay();
+        }
+
         @Override
         protected void cleanCache() {
-            long time = SystemClock.uptimeMillis();
+            boolean forced = forceClean;
+            forceClean = false;
+
+            // only one instance cleans the cache at a time
+            boolean locked;
+            try {
+                locked = cleanLock.tryLock();
+            } catch (IOException e) {
+                Log.w(TAG, "cannot lock file: " + cleanLock.getFile(), e);
+                cleanCache(forced);
+                return;
+            }
+            if (!locked) {
+                Log.v(TAG, "clean cache is skipped: another instance is cleaning");
+                return;
+            }
+            try {
+                cleanCache(forced);
+            } finally {
+                cleanLock.unlock();
+            }
+        }
+
+        private void cleanCache(boolean forced) {
+            if (!forced && isCleanedByOther()) {
+                Log.v(TAG, "clean cache is skipped: another instance has cleaned it");
+
+                // load the index saved by the other instance or rescan
+                if (isKeyIndexEnabled() && !index.isCurrent()) {
+                    buildIndex(true);
+                }
+                return;
+            }
+
+            int parallelism = getScanParallelism();
+            ExecutorService executor = null;
+            if (parallelism > 1) {
+                executor = Executors.newFixedThreadPool(parallelism,
+                        new DaemonThreadFactory("NoveoDiskCacheScanner", Thread.MIN_PRIORITY));
+            }
+            try {
+                cleanCache(executor, parallelism);
+            } finally {
+                if (executor != null) {
+                    executor.shutdown();
+                }
+            }
+            propertyManager.setLastClean(clock.currentTimeMillis(), instanceId);
+        }
+
+        private void cleanCache(ExecutorService executor, int parallelism) {
+            long time = clock.uptimeMillis();
             Log.v(TAG, "clean cache ...");
 
+            if (isKeyIndexEnabled()) {
+                index.createStamp();
+            }
+            long stamp = index.beginScan();
+            BloomFilter fingerprints = null;
+            boolean replaced;
+            try {
+                fingerprints = cleanEntries(executor, parallelism);
+            } finally {
+                replaced = index.finishScan(fingerprints, clock.uptimeMillis() - time, stamp);
+            }
+            if (replaced && isKeyIndexEnabled()) {
+                index.save();
+            }
+
+            time = clock.uptimeMillis() - time;
+            statsCounter.recordClean(time);
+            Log.v(TAG, String.format("done [clean cache] %.3f sec", time / 1000.f));
+        }
+
+        /**
+         * Adds missing markers of entries committed before their fields were indexed.
+         */
+        private void indexFields(List<EntryItem> entryList) {
+            Set<String> fields = getIndexedFields();
+            if (fields.isEmpty()) {
+                return;
+            }
+            for (EntryItem item : entryList) {
+                Entry<K> entry = item.source();
+                if (entry.exists()) {
+                    try {
+                        fieldIndex.add(fields, entry.getMetaData(), entry.entryFile);
+                    } catch (IOException e) {
+                        Log.v(DiskCacheCore.TAG, "cannot index an entry", e);
+                    }
+                }
+            }
+        }
+
+        private BloomFilter cleanEntries(ExecutorService executor, int parallelism) {
+
             // get entry files list
-            List<File> entryFileList = Utils.listFiles(metaDataDirectory, true);
-            List<EntryItem> expiredEntryFileList = new ArrayList<EntryItem>(entryFileList.size());
-            List<EntryItem> protectedEntryFileList = new ArrayList<EntryItem>(entryFileList.size());
+            List<List<File>> entryFileList = listFiles(metaDataDirectory, executor, parallelism);
+            List<EntryItem> expiredEntryFileList = new ArrayList<EntryItem>(size(entryFileList));
+            List<EntryItem> protectedEntryFileList = new ArrayList<EntryItem>(size(entryFileList));
             CleanerHelper.entities(new CleanerHelper.Loader<EntryItem, File>() {
                 @Override
                 public EntryItem load(File source) {
@@ -163,24 +604,26 @@ public class DiskCacheCore<K> {
                         return null;
                     }
                 }
-            }, entryFileList, expiredEntryFileList, protectedEntryFileList);
+            }, entryFileList, expiredEntryFileList, protectedEntryFileList, executor);
 
             // get protected files
-            List<File> protectedFileList = new ArrayList<File>();
-            protectedFileList.addAll(getProtectedFileList(expiredEntryFileList));
-            protectedFileList.addAll(getProtectedFileList(protectedEntryFileList));
+            Set<File> protectedFileSet = new HashSet<File>();
+            protectedFileSet.addAll(getProtectedFileList(expiredEntryFileList));
+            protectedFileSet.addAll(getProtectedFileList(protectedEntryFileList));
 
             // get temp files list
-            List<File> tempFileList = Utils.listFiles(storageDirectory, true);
-            tempFileList.removeAll(protectedFileList);
-            List<FileItem> expiredFileItemList = new ArrayList<FileItem>(tempFileList.size());
-            List<FileItem> protectedFileItemList = new ArrayList<FileItem>(tempFileList.size());
+            List<List<File>> tempFileList = listFiles(storageDirectory, executor, parallelism);
+            for (List<File> partition : tempFileList) {
+                partition.removeAll(protectedFileSet);
+            }
+            List<FileItem> expiredFileItemList = new ArrayList<FileItem>(size(tempFileList));
+            List<FileItem> protectedFileItemList = new ArrayList<FileItem>(size(tempFileList));
             CleanerHelper.entities(new CleanerHelper.Loader<FileItem, File>() {
                 @Override
                 public FileItem load(File source) {
                     return new FileItem(source);
                 }
-            }, tempFileList, expiredFileItemList, protectedFileItemList);
+            }, tempFileList, expiredFileItemList, protectedFileItemList, executor);
 
             // merge lists
             List<CleanerHelper.Item> expiredList = new ArrayList<CleanerHelper.Item>();
@@ -193,8 +636,20 @@ public class DiskCacheCore<K> {
             // clean
             CleanerHelper.clean(expiredList, protectedList, getMaxSize());
 
-            time = SystemClock.uptimeMillis() - time;
-            Log.v(TAG, String.format("done [clean cache] %.3f sec", time / 1000.f));
+            // index fields of remaining entries and drop markers of deleted ones
+            indexFields(expiredEntryFileList);
+            indexFields(protectedEntryFileList);
+            fieldIndex.prune();
+
+            // fingerprints of remaining entries
+            BloomFilter fingerprints = KeyIndex.createFilter(expiredEntryFileList.size() + protectedEntryFileList.size());
+            for (EntryItem item : expiredEntryFileList) {
+                fingerprints.add(item.source().getFingerprint());
+            }
+            for (EntryItem item : protectedEntryFileList) {
+                fingerprints.add(item.source().getFingerprint());
+            }
+            return fingerprints;
         }
 
     }
@@ -205,12 +660,23 @@ public class DiskCacheCore<K> {
 
     private final KeyManager<K> keyManager;
     private final Serializer<K> serializer;
+    private final Clock clock;
 
     private volatile long debugTimeout;
     private volatile float debugCleanProbability;
+    private volatile boolean keyMatchingEnabled;
 
     private final PropertyManager propertyManager;
-    private final Cleaner cleaner = new Cleaner();
+    private final StatsCounter statsCounter = new StatsCounter();
+    private final NameGenerator nameGenerator = new NameGenerator();
+    private final KeyIndex index;
+    private final AtomicBoolean indexBuildStarted = new AtomicBoolean(false);
+    private final FieldIndex fieldIndex;
+    private final LockFile cleanLock;
+    private final String instanceId = UUID.randomUUID().toString();
+    private volatile boolean forceClean;
+    private final FileSyncer fileSyncer = new FileSyncer(new DaemonThreadFactory("NoveoDiskCacheSyncer"));
+    private final Cleaner cleaner;
 
     /**
      * Creates new disk cache core instance.
@@ -221,14 +687,193 @@ public class DiskCacheCore<K> {
      * @param serializer     a key serializer.
      */
     public DiskCacheCore(boolean debugMode, File cacheDirectory, KeyManager<K> keyManager, Serializer<K> serializer) {
+        this(debugMode, cacheDirectory, keyManager, serializer, new DefaultClock());
+    }
+
+    /**
+     * Creates new disk cache core instance.
+     *
+     * @param debugMode      true if debug mode is on.
+     * @param cacheDirectory the cache directory.
+     * @param keyManager     a key manager.
+     * @param serializer     a key serializer.
+     * @param clock          a clock to timestamp entries.
+     */
+    public DiskCacheCore(boolean debugMode, File cacheDirectory, KeyManager<K> keyManager, Serializer<K> serializer, Clock clock) {
+        if (clock == null) {
+            throw new NullPointerException();
+        }
+
         this.cacheDirectory = cacheDirectory;
         this.keyManager = keyManager;
         this.serializer = serializer;
+        this.clock = clock;
         this.metaDataDirectory = new File(cacheDirectory, SUBDIRECTORY_META_DATA);
         this.storageDirectory = new File(cacheDirectory, SUBDIRECTORY_STORAGE);
+        this.index = new KeyIndex(new File(cacheDirectory, FILE_KEY_INDEX),
+                new ChangeStamp(new File(cacheDirectory, FILE_KEY_INDEX_STAMP),
+                        new LockFile(new File(cacheDirectory, FILE_KEY_INDEX_STAMP_LOCK))), clock);
+        this.fieldIndex = new FieldIndex(new File(cacheDirectory, SUBDIRECTORY_FIELD_INDEX), metaDataDirectory);
         this.debugTimeout = debugMode ? DEBUG_TIMEOUT : 0;
         this.debugCleanProbability = debugMode ? DEBUG_CLEAN_PROBABILITY : 0.f;
-        this.propertyManager = new PropertyManager();
+        this.cleanLock = new LockFile(new File(cacheDirectory, FILE_CLEAN_LOCK));
+        this.propertyManager = new PropertyManager(new File(cacheDirectory, FILE_SETTINGS),
+                new LockFile(new File(cacheDirectory, FILE_SETTINGS_LOCK)), clock);
+        this.cleaner = new Cleaner(clock);
+
+        // create directories once, they are recreated on demand if erased
+        this.metaDataDirectory.mkdirs();
+        this.storageDirectory.mkdirs();
+
+        // warm the index up without blocking
+        if (isKeyIndexEnabled()) {
+            startIndexBuild(true);
+        }
+    }
+
+    private void buildIndex(boolean loadSaved) {
+        long time = clock.uptimeMillis();
+        BloomFilter fingerprints = null;
+        boolean scanned = false;
+        boolean replaced;
+        if (isKeyIndexEnabled()) {
+            index.createStamp();
+        }
+        long stamp = index.beginScan();
+        try {
+            if (loadSaved) {
+                fingerprints = index.load(stamp);
+            }
+            if (fingerprints == null) {
+                List<File> entryFileList = Utils.listFiles(metaDataDirectory, true);
+                fingerprints = KeyIndex.createFilter(entryFileList.size());
+                byte[] buffer = new byte[DiskCacheEntry.MATCH_HEADER_SIZE];
+                for (File file : entryFileList) {
+                    try {
+                        fingerprints.add(DiskCacheEntry.readFingerprint(file, serializer, buffer));
+                    } catch (IOException e) {
+                        Log.v(DiskCacheCore.TAG, "cannot read an entry", e);
+                    }
+                }
+                scanned = true;
+            }
+        } finally {
+            time = clock.uptimeMillis() - time;
+            replaced = index.finishScan(fingerprints, time, stamp);
+            Log.v(TAG, String.format("done [build index] %.3f sec", time / 1000.f));
+        }
+
+        if (replaced && scanned && isKeyIndexEnabled()) {
+            index.save();
+        }
+    }
+
+    private void startIndexBuild(final boolean loadSaved) {
+        indexBuildStarted.set(true);
+        new DaemonThreadFactory("NoveoDiskCacheIndex", Thread.MIN_PRIORITY).newThread(new Runnable() {
+            @Override
+            public void run() {
+                buildIndex(loadSaved);
+            }
+        }).start();
+    }
+
+    /**
+     * Starts rebuilding of the key index in a background thread.
+     * <p/>
+     * The index is loaded or built on creation of the cache, updated on
+     * commits and removals and rebuilt by cleaning. An index that is not
+     * trusted because other instances have added entries is also rebuilt
+     * when cleaning is skipped because another instance has done it.
+     *
+     * @see #isIndexReady()
+     */
+    public void rebuildIndex() {
+        startIndexBuild(false);
+    }
+
+    /**
+     * Returns true if lookups use the key index.
+     *
+     * @return the key index status.
+     * @see #setKeyIndexEnabled(boolean)
+     */
+    public boolean isKeyIndexEnabled() {
+        return propertyManager.isKeyIndexEnabled(DEFAULT_KEY_INDEX_ENABLED);
+    }
+
+    /**
+     * Turns on or off using of the key index by lookups.
+     * <p/>
+     * When it is on, {@link #search(Object)} returns null for a key missing
+     * in the index without listing directories. Instances using the same
+     * cache directory increment a shared change stamp when they add entries,
+     * so an index is not trusted after other instances have added entries
+     * until it is rebuilt, and lookups list directories meanwhile. Lookups
+     * reread the stamp at most once a second, so they may miss entries added
+     * by other instances for that time. The index is off by default. The index
+     * is built in background when it is turned on. Turning it off deletes
+     * the stamp, so commits don't update it.
+     *
+     * @param keyIndexEnabled true to use the key index.
+     * @see #isIndexReady()
+     */
+    public void setKeyIndexEnabled(boolean keyIndexEnabled) {
+        propertyManager.setKeyIndexEnabled(keyIndexEnabled);
+        if (!keyIndexEnabled) {
+            index.deleteStamp();
+        } else if (indexBuildStarted.compareAndSet(false, true) || !index.isCurrent()) {
+            startIndexBuild(true);
+        }
+    }
+
+    /**
+     * Returns true if the key index is built.
+     * <p/>
+     * The index is a counting Bloom filter of fingerprints of keys of all
+     * entries. It is saved to the cache directory after scans, so it usually
+     * gets ready without scanning when the cache is created. When it is ready
+     * and enabled, {@link #search(Object)} returns null for a missing key
+     * without listing directories. Until then lookups use directory listings
+     * only. The index is used only if keys are located by fingerprints, i.e.
+     * if key matching is enabled or fingerprint based directory layout is used.
+     *
+     * @return true if the index is ready.
+     * @see #setKeyIndexEnabled(boolean)
+     * @see #setKeyMatchingEnabled(boolean)
+     * @see #setFanOutLevels(int)
+     */
+    public boolean isIndexReady() {
+        return index.isReady();
+    }
+
+    /**
+     * Returns duration of the first build of the key index.
+     *
+     * @return the time in milliseconds or -1 if the index isn't ready.
+     */
+    public long getIndexBuildTime() {
+        return index.getBuildTime();
+    }
+
+    /**
+     * Returns approximate count of fingerprints in the key index. It may be
+     * greater than count of entries because entries deleted by cleaning are
+     * dropped from the index only when it is rebuilt.
+     *
+     * @return the size of the index.
+     */
+    public int getIndexSize() {
+        return index.size();
+    }
+
+    /**
+     * Returns the clock of the cache.
+     *
+     * @return the clock.
+     */
+    public Clock getClock() {
+        return clock;
     }
 
     /**
@@ -271,6 +916,173 @@ public class DiskCacheCore<K> {
         this.debugCleanProbability = debugCleanProbability;
     }
 
+    /**
+     * Returns count of levels of entry directories.
+     *
+     * @return count of levels.
+     * @see #setFanOutLevels(int)
+     */
+    public int getFanOutLevels() {
+        return propertyManager.getFanOutLevels(DEFAULT_FAN_OUT_LEVELS);
+    }
+
+    /**
+     * Sets count of levels of entry directories.
+     * <p/>
+     * Negative value means the legacy layout: one directory per hash code
+     * of {@link KeyManager}. Otherwise entries are placed by a 64-bit
+     * fingerprint of the serialized key, each level of directories is named
+     * by the next byte of the fingerprint (for example {@code AB/CD/} for two
+     * levels) and names of entry files start with the fingerprint. Zero means
+     * that all entry files are placed into one directory. Such layout keeps
+     * sizes of directories bounded and independent of quality of
+     * {@link KeyManager#hashCode(Object)}, but requires equal keys to have
+     * equal serialized forms.
+     * <p/>
+     * Entries committed using another layout are not found after the change
+     * and will be removed by cleaning.
+     *
+     * @param fanOutLevels new count of levels, not greater than {@link #MAX_FAN_OUT_LEVELS}.
+     */
+    public void setFanOutLevels(int fanOutLevels) {
+        if (fanOutLevels > MAX_FAN_OUT_LEVELS) {
+            throw new IllegalArgumentException("fan-out levels should not be greater than " + MAX_FAN_OUT_LEVELS);
+        }
+
+        propertyManager.setFanOutLevels(fanOutLevels);
+    }
+
+    /**
+     * Returns parallelism of directory scans of cleaning.
+     *
+     * @return parallelism of scans.
+     * @see #setScanParallelism(int)
+     */
+    public int getScanParallelism() {
+        return propertyManager.getScanParallelism(DEFAULT_SCAN_PARALLELISM);
+    }
+
+    /**
+     * Sets parallelism of directory scans of cleaning.
+     * <p/>
+     * If the value is greater than one, cleaning lists entry and storage
+     * directories and loads entries using a pool of the specified count of
+     * threads. The work is partitioned by subdirectories (hash code
+     * directories of entries). It is useful for large caches on storages
+     * handling parallel I/O well. Other values mean sequential scans.
+     *
+     * @param scanParallelism new parallelism of scans.
+     */
+    public void setScanParallelism(int scanParallelism) {
+        propertyManager.setScanParallelism(scanParallelism);
+    }
+
+    /**
+     * Returns durability of commits.
+     *
+     * @return durability of commits.
+     * @see #setDurability(Durability)
+     */
+    public Durability getDurability() {
+        return propertyManager.getDurability(DEFAULT_DURABILITY);
+    }
+
+    /**
+     * Sets durability of commits.
+     * <p/>
+     * Durable modes sync an entry file and a file of its value.
+     * Directories are not synced, so a renamed entry file may still
+     * be lost on some file systems.
+     *
+     * @param durability new durability of commits.
+     */
+    public void setDurability(Durability durability) {
+        if (durability == null) {
+            throw new NullPointerException("durability cannot be null");
+        }
+
+        propertyManager.setDurability(durability);
+    }
+
+    /**
+     * Returns group commit window.
+     *
+     * @return group commit window in milliseconds.
+     * @see #setGroupCommitWindow(long)
+     */
+    public long getGroupCommitWindow() {
+        return propertyManager.getGroupCommitWindow(DEFAULT_GROUP_COMMIT_WINDOW);
+    }
+
+    /**
+     * Sets group commit window. It is a time to collect concurrent commits
+     * before files are synced in background when durability is
+     * {@link Durability#ASYNC}. The window ends early when a commit with
+     * {@link Durability#GROUP_COMMIT} durability waits for its files.
+     * Negative value means no waiting.
+     *
+     * @param groupCommitWindow new value of group commit window in milliseconds.
+     */
+    public void setGroupCommitWindow(long groupCommitWindow) {
+        propertyManager.setGroupCommitWindow(groupCommitWindow);
+    }
+
+    /**
+     * Returns meta data fields having a secondary index.
+     *
+     * @return the unmodifiable set of indexed fields.
+     * @see #setIndexedFields(Set)
+     */
+    public Set<String> getIndexedFields() {
+        return propertyManager.getIndexedFields(Collections.<String>emptySet());
+    }
+
+    /**
+     * Sets meta data fields having a secondary index.
+     * <p/>
+     * An index maps values of a field to entries containing them, so
+     * {@link #searchWhere(String, Serializable)} finds such entries without
+     * reading other ones. Values are matched by their string representations
+     * and checked by {@link Object#equals(Object)} after the entries are read.
+     * The index is kept on disk and updated on commits and removals.
+     * Entries committed before a field was declared are indexed by the next
+     * cleaning.
+     *
+     * @param indexedFields new set of indexed fields.
+     */
+    public void setIndexedFields(Set<String> indexedFields) {
+        if (indexedFields == null) {
+            throw new NullPointerException("indexed fields cannot be null");
+        }
+
+        propertyManager.setIndexedFields(new HashSet<String>(indexedFields));
+    }
+
+    /**
+     * Returns true if keys are matched by their serialized bytes.
+     *
+     * @return the key matching status.
+     * @see #setKeyMatchingEnabled(boolean)
+     */
+    public boolean isKeyMatchingEnabled() {
+        return keyMatchingEnabled;
+    }
+
+    /**
+     * Turns on or off matching of keys by their serialized bytes.
+     * <p/>
+     * When it is on, {@link #search(Object)} serializes the key once and
+     * rejects entry files by a fingerprint and bytes of the key stored in their
+     * headers, so keys of colliding entries are not deserialized. It is valid only
+     * if equal keys have equal serialized forms and vice versa, which depends on
+     * the key serializer, so it is off by default.
+     *
+     * @param keyMatchingEnabled true to match keys by bytes.
+     */
+    public void setKeyMatchingEnabled(boolean keyMatchingEnabled) {
+        this.keyMatchingEnabled = keyMatchingEnabled;
+    }
+
     /**
      * Returns a root cache directory.
      * <p><b>Attention</b>: It is not a directory where the cache
@@ -315,6 +1127,29 @@ public class DiskCacheCore<K> {
         propertyManager.setCleanTimeDelay(cleanTimeDelay);
     }
 
+    /**
+     * Returns clean jitter.
+     *
+     * @return the clean jitter.
+     * @see #setCleanJitter(long)
+     */
+    public long getCleanJitter() {
+        return propertyManager.getCleanJitter(DEFAULT_CLEAN_JITTER);
+    }
+
+    /**
+     * Sets clean jitter. It is a maximum random time added to clean time
+     * delay, so instances sharing the cache directory don't start cleaning
+     * at the same moment. Scheduled cleaning is skipped if another instance
+     * has finished cleaning less than clean time delay ago.
+     *
+     * @param cleanJitter new value of clean jitter in milliseconds.
+     * @see #setCleanTimeDelay(long)
+     */
+    public void setCleanJitter(long cleanJitter) {
+        propertyManager.setCleanJitter(cleanJitter);
+    }
+
     /**
      * Returns clean modification count.
      *
@@ -417,23 +1252,137 @@ public class DiskCacheCore<K> {
         propertyManager.setExpirationTime(expirationTime);
     }
 
+    /**
+     * Returns refresh-ahead time.
+     *
+     * @return the refresh-ahead time.
+     */
+    public long getRefreshAheadTime() {
+        return propertyManager.getRefreshAheadTime(DEFAULT_REFRESH_AHEAD_TIME);
+    }
+
+    /**
+     * Sets refresh-ahead time.
+     * <p/>
+     * When an entry put with time to live is loaded by a loader-backed get
+     * and its deadline is closer than this value, the value will be reloaded
+     * in background. The old value is returned until the new one is committed.
+     * Negative value turns refresh-ahead off.
+     * <p/>
+     * Entries without time to live are deleted by max age counted from their
+     * last access, so an accessed entry never approaches it. Such entries are
+     * refreshed according to refresh-after time.
+     *
+     * @param refreshAheadTime new value of refresh-ahead time.
+     * @see #setRefreshAfterTime(long)
+     */
+    public void setRefreshAheadTime(long refreshAheadTime) {
+        propertyManager.setRefreshAheadTime(refreshAheadTime);
+    }
+
+    /**
+     * Returns refresh-after time.
+     *
+     * @return the refresh-after time.
+     */
+    public long getRefreshAfterTime() {
+        return propertyManager.getRefreshAfterTime(DEFAULT_REFRESH_AFTER_TIME);
+    }
+
+    /**
+     * Sets refresh-after time.
+     * <p/>
+     * When an entry without time to live is loaded by a loader-backed get
+     * and it has been created more than this value ago, the value will be
+     * reloaded in background. Negative value turns it off.
+     *
+     * @param refreshAfterTime new value of refresh-after time.
+     */
+    public void setRefreshAfterTime(long refreshAfterTime) {
+        propertyManager.setRefreshAfterTime(refreshAfterTime);
+    }
+
+    /**
+     * Checks if collecting of statistics is turned on.
+     *
+     * @return true if statistics is collected.
+     */
+    public boolean isStatsEnabled() {
+        return statsCounter.isEnabled();
+    }
+
+    /**
+     * Turns collecting of statistics on and off.
+     *
+     * @param statsEnabled true to collect statistics.
+     */
+    public void setStatsEnabled(boolean statsEnabled) {
+        statsCounter.setEnabled(statsEnabled);
+    }
+
+    /**
+     * Returns a snapshot of statistics of the cache.
+     *
+     * @return the statistics.
+     * @see #setStatsEnabled(boolean)
+     */
+    public CacheStats getStats() {
+        return statsCounter.snapshot();
+    }
+
+    /**
+     * Resets statistics of the cache.
+     */
+    public void resetStats() {
+        statsCounter.reset();
+    }
+
+    /**
+     * Returns the counter collecting statistics of the cache.
+     *
+     * @return the statistics counter.
+     */
+    protected StatsCounter getStatsCounter() {
+        return statsCounter;
+    }
+
     /**
      * Totally erases the cache. This method deletes a content of
      * cache directory and get the cache to its initial state.
+     * Shared settings and lock files are kept, key indexes of all instances
+     * are not trusted until they are rebuilt.
      *
      * @see #clean()
      */
     public void erase() {
-        Utils.deleteContent(cacheDirectory);
+        File[] files = cacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                // the change stamp is deleted by the index holding its lock
+                String name = file.getName();
+                if (!name.equals(FILE_SETTINGS) && !name.equals(FILE_SETTINGS_LOCK) && !name.equals(FILE_CLEAN_LOCK)
+                        && !name.equals(FILE_KEY_INDEX_STAMP) && !name.equals(FILE_KEY_INDEX_STAMP_LOCK)) {
+                    Utils.deleteRecursively(file);
+                }
+            }
+        }
+        index.clear();
+        if (isKeyIndexEnabled()) {
+            startIndexBuild(false);
+        }
     }
 
     /**
      * Forces a start of cleaning process. Cleaning will be done
      * in a background thread - so this method is not blocking.
+     * <p/>
+     * Cleaning is skipped if another instance using the same cache
+     * directory is cleaning it now.
      *
      * @see #erase()
      */
     public void clean() {
+        forceClean = true;
         cleaner.clean();
     }
 
@@ -502,7 +1451,7 @@ public class DiskCacheCore<K> {
      */
     public File createFile(boolean directory, String prefix, String suffix) throws IOException {
         cleaner.access(true, getCleanTimeDelay(), getCleanModificationCount());
-        return Utils.createTempFile(directory, prefix, suffix, storageDirectory);
+        return nameGenerator.createFile(directory, prefix, suffix, storageDirectory);
     }
 
     /**
@@ -544,7 +1493,7 @@ public class DiskCacheCore<K> {
         }
 
         cleaner.access(true, getCleanTimeDelay(), getCleanModificationCount()); // user possible has changed the content of the file
-        if (!file.setLastModified(System.currentTimeMillis())) {
+        if (!file.setLastModified(clock.currentTimeMillis())) {
             throw new IOException("cannot touch file " + file);
         }
 
@@ -584,13 +1533,14 @@ public class DiskCacheCore<K> {
 
         private final DiskCacheCore<K> owner;
         private File entryFile;
+        private MetaData indexedMetaData;
 
         private Entry(DiskCacheCore<K> owner, K key) {
             this.owner = owner;
             this.entryFile = null;
             setKey(key);
-            setCreateTime(System.currentTimeMillis());
-            setAccessTime(System.currentTimeMillis());
+            setCreateTime(owner.clock.currentTimeMillis());
+            setAccessTime(owner.clock.currentTimeMillis());
             setMetaData(new MetaData());
             setFile(null);
         }
@@ -599,6 +1549,9 @@ public class DiskCacheCore<K> {
             this.owner = owner;
             this.entryFile = entryFile;
             loadEntry(entryFile, owner.serializer);
+            if (!owner.getIndexedFields().isEmpty()) {
+                indexedMetaData = new MetaData(getMetaData());
+            }
 
             // cause force cleaning
             if (Math.random() < owner.debugCleanProbability) {
@@ -614,7 +1567,17 @@ public class DiskCacheCore<K> {
          * Sets access time to now.
          */
         public void access() {
-            setAccessTime(System.currentTimeMillis());
+            setAccessTime(owner.clock.currentTimeMillis());
+        }
+
+        /**
+         * Checks if the deadline of the entry has passed.
+         *
+         * @return true if the entry is expired.
+         */
+        public boolean isExpired() {
+            long deadline = getDeadline();
+            return deadline >= 0 && owner.clock.currentTimeMillis() > deadline;
         }
 
         /**
@@ -636,18 +1599,69 @@ public class DiskCacheCore<K> {
             owner.cleaner.access(true, owner.getCleanTimeDelay(), owner.getCleanModificationCount());
 
             if (entryFile != null) {
-                boolean success = Utils.delete(entryFile);
-                if (!success) {
+                // only the removal deleting the file removes its fingerprint
+                if (!entryFile.delete()) {
                     if (entryFile.exists()) {
                         throw new IOException("cannot remove entry file: " + entryFile);
                     }
+                } else {
+                    owner.index.remove(getFingerprint());
+                    Set<String> fields = owner.getIndexedFields();
+                    if (!fields.isEmpty()) {
+                        owner.fieldIndex.remove(fields, getMetaData(), entryFile);
+                        owner.fieldIndex.remove(fields, indexedMetaData, entryFile);
+                    }
                 }
                 entryFile = null;
+                indexedMetaData = null;
+            }
+        }
+
+        private Set<String> getAddedFields(Set<String> fields) {
+            if (indexedMetaData == null || fields.isEmpty()) {
+                return fields;
+            }
+            Set<String> addedFields = new HashSet<String>();
+            for (String field : fields) {
+                Object value = getMetaData() == null ? null : getMetaData().get(field);
+                Object indexedValue = indexedMetaData.get(field);
+                if (value != null && (indexedValue == null || !String.valueOf(indexedValue).equals(String.valueOf(value)))) {
+                    addedFields.add(field);
+                }
+            }
+            return addedFields;
+        }
+
+        private void removeChangedMarkers(Set<String> fields) {
+            if (indexedMetaData == null) {
+                return;
+            }
+            Set<String> changedFields = new HashSet<String>();
+            for (String field : fields) {
+                Object value = getMetaData() == null ? null : getMetaData().get(field);
+                Object indexedValue = indexedMetaData.get(field);
+                if (indexedValue != null && !String.valueOf(indexedValue).equals(String.valueOf(value))) {
+                    changedFields.add(field);
+                }
             }
+            if (!changedFields.isEmpty()) {
+                owner.fieldIndex.remove(changedFields, indexedMetaData, entryFile);
+            }
+        }
+
+        private List<File> getSyncFiles(File entryFile) {
+            List<File> files = new ArrayList<File>(2);
+            File file = getFile();
+            if (file != null && file.isFile()) {
+                files.add(file);
+            }
+            files.add(entryFile);
+            return files;
         }
 
         /**
          * Saves the entry to new entry file or updates the original one.
+         * Files are synced according to durability of the cache.
          *
          * @throws IOException if I/O error occurred.
          */
@@ -663,16 +1677,42 @@ public class DiskCacheCore<K> {
                 // save the entry
                 saveEntry(tempFile, owner.serializer);
 
-                // get hash code directory and create it
-                File hashCodeDirectory = owner.getHashCodeDirectory(getKey());
-                hashCodeDirectory.mkdirs();
+                // sync the entry before it becomes visible
+                Durability durability = owner.getDurability();
+                if (durability == Durability.PER_COMMIT) {
+                    for (File file : getSyncFiles(tempFile)) {
+                        Utils.sync(file);
+                    }
+                } else if (durability == Durability.GROUP_COMMIT) {
+                    owner.fileSyncer.sync(getSyncFiles(tempFile), owner.getGroupCommitWindow());
+                }
+
+                // get hash code directory
+                int fanOutLevels = owner.getFanOutLevels();
+                File hashCodeDirectory = fanOutLevels < 0
+                        ? owner.getHashCodeDirectory(getKey())
+                        : owner.getFingerprintDirectory(getFingerprint(), fanOutLevels);
 
                 // move the temp file
                 if (entryFile == null) {
-                    tempEntryFile = Utils.createTempFile(false, "", "", hashCodeDirectory);
+                    String prefix = fanOutLevels < 0 ? "" : getFingerprintName(getFingerprint()) + "-";
+                    tempEntryFile = owner.nameGenerator.createFile(false, prefix, "", hashCodeDirectory);
                     entryFile = tempEntryFile;
                 }
 
+                // the index must know the new entry before it becomes visible,
+                // an entry file removed concurrently is created again
+                boolean created = tempEntryFile != null || !entryFile.exists();
+                if (created) {
+                    owner.index.add(getFingerprint());
+                }
+                // a hit commits only the access time, markers of unchanged values exist
+                Set<String> fields = owner.getIndexedFields();
+                Set<String> addedFields = created ? fields : getAddedFields(fields);
+                if (!addedFields.isEmpty()) {
+                    owner.fieldIndex.add(addedFields, getMetaData(), entryFile);
+                }
+
                 if (!tempFile.renameTo(entryFile)) {
                     throw new IOException("cannot move temp file " + tempFile + " to entry storage as " + tempEntryFile);
                 }
@@ -681,6 +1721,22 @@ public class DiskCacheCore<K> {
                 tempFile = null;
                 tempEntryFile = null;
 
+                // let other instances know their indexes miss the new entry
+                if (created) {
+                    owner.index.commit(getFingerprint());
+                }
+
+                // drop markers of changed values
+                if (!fields.isEmpty()) {
+                    removeChangedMarkers(fields);
+                    indexedMetaData = new MetaData(getMetaData());
+                }
+
+                // sync the entry after it became visible
+                if (durability == Durability.ASYNC) {
+                    owner.fileSyncer.syncLater(getSyncFiles(entryFile), owner.getGroupCommitWindow());
+                }
+
                 // cause force cleaning
                 if (Math.random() < owner.debugCleanProbability) {
                     Log.d(DiskCache.TAG, "clean simulation. force delete file: " + entryFile);
@@ -698,11 +1754,43 @@ public class DiskCacheCore<K> {
 
     }
 
+    /**
+     * Returns a directory an entry of the key is placed to.
+     *
+     * @param key the key.
+     * @return the directory.
+     */
+    File getEntryDirectory(K key) {
+        int fanOutLevels = getFanOutLevels();
+        if (fanOutLevels >= 0) {
+            try {
+                long fingerprint = DiskCacheEntry.fingerprint(DiskCacheEntry.serializeKey(key, serializer));
+                return getFingerprintDirectory(fingerprint, fanOutLevels);
+            } catch (IOException e) {
+                Log.v(TAG, "cannot serialize a key", e);
+            }
+        }
+        return getHashCodeDirectory(key);
+    }
+
     private File getHashCodeDirectory(K key) {
         int hashCode = keyManager.hashCode(key);
         return new File(metaDataDirectory, String.format("%08X", hashCode));
     }
 
+    private static String getFingerprintName(long fingerprint) {
+        return String.format("%016X", fingerprint);
+    }
+
+    private File getFingerprintDirectory(long fingerprint, int fanOutLevels) {
+        File directory = metaDataDirectory;
+        for (int level = 0; level < fanOutLevels; level++) {
+            int value = (int) (fingerprint >>> (56 - level * 8)) & 0xFF;
+            directory = new File(directory, String.format("%02X", value));
+        }
+        return directory;
+    }
+
     /**
      * Creates new cache entry with the specified key.
      *
@@ -717,19 +1805,81 @@ public class DiskCacheCore<K> {
     /**
      * Searches a cache entry using the specified key.
      * Returns null if nothing was found.
+     * <p/>
+     * An expired entry is removed and treated as a missing one.
      *
      * @param key a type of the key.
      * @return the cache entry or null.
      */
     public Entry<K> search(K key) {
         cleaner.access(false, getCleanTimeDelay(), getCleanModificationCount());
-        File hashCodeDirectory = getHashCodeDirectory(key);
+        int fanOutLevels = getFanOutLevels();
+
+        // serialize the key once to locate and match entry files by bytes
+        byte[] keyBytes = null;
+        long fingerprint = 0;
+        if (keyMatchingEnabled || fanOutLevels >= 0) {
+            try {
+                keyBytes = DiskCacheEntry.serializeKey(key, serializer);
+                fingerprint = DiskCacheEntry.fingerprint(keyBytes);
+            } catch (IOException e) {
+                Log.v(DiskCacheCore.TAG, "cannot serialize a key", e);
+                if (fanOutLevels >= 0) {
+                    return null;
+                }
+            }
+        }
+
+        // the index knows all existing keys
+        if (keyBytes != null && isKeyIndexEnabled()) {
+            if (index.isReady()) {
+                if (!index.contains(fingerprint)) {
+                    return null;
+                }
+            } else if (indexBuildStarted.compareAndSet(false, true)) {
+                // the index has been enabled by another instance
+                startIndexBuild(true);
+            }
+        }
+
+        File hashCodeDirectory;
+        String fingerprintName = null;
+        if (fanOutLevels < 0) {
+            hashCodeDirectory = getHashCodeDirectory(key);
+        } else {
+            hashCodeDirectory = getFingerprintDirectory(fingerprint, fanOutLevels);
+            fingerprintName = getFingerprintName(fingerprint);
+        }
+
         File[] files = hashCodeDirectory.listFiles();
         if (files != null) {
+            byte[] buffer = null;
+            if (keyMatchingEnabled && keyBytes != null) {
+                buffer = new byte[DiskCacheEntry.MATCH_HEADER_SIZE + keyBytes.length];
+            }
+
             // sort files - the result should not depend on files order on the disk
             Arrays.sort(files);
             // find a file containing an entry with the specified key
             for (File file : files) {
+                // names of entry files contain fingerprints of their keys
+                if (fingerprintName != null && !file.getName().contains(fingerprintName)) {
+                    continue;
+                }
+
+                int match = DiskCacheEntry.MATCH_UNKNOWN;
+                if (buffer != null) {
+                    try {
+                        match = DiskCacheEntry.match(file, fingerprint, keyBytes, buffer);
+                    } catch (IOException e) {
+                        // ignore an exception
+                        continue;
+                    }
+                    if (match == DiskCacheEntry.MATCH_NO) {
+                        continue;
+                    }
+                }
+
                 Entry<K> entry;
                 try {
                     entry = new Entry<K>(this, file);
@@ -738,7 +1888,17 @@ public class DiskCacheCore<K> {
                     continue;
                 }
 
-                if (keyManager.equals(key, entry.getKey())) {
+                if (match == DiskCacheEntry.MATCH_YES || keyManager.equals(key, entry.getKey())) {
+                    if (entry.isExpired()) {
+                        statsCounter.recordEviction(CacheStats.EvictionReason.EXPIRATION);
+                        try {
+                            Utils.delete(entry.getFile());
+                            entry.remove();
+                        } catch (IOException e) {
+                            Log.v(DiskCacheCore.TAG, "cannot remove expired entry", e);
+                        }
+                        return null;
+                    }
                     return entry;
                 }
             }
@@ -746,6 +1906,125 @@ public class DiskCacheCore<K> {
         return null;
     }
 
+    /**
+     * Returns all entries of the cache.
+     *
+     * @return the entries.
+     * @see #entries(EntryFilter)
+     */
+    public Iterable<Entry<K>> entries() {
+        return entries(null);
+    }
+
+    /**
+     * Returns entries of the cache accepted by the filter.
+     * <p/>
+     * Entries are read lazily while iterating: directories are listed one
+     * by one and only listings of directories on the current path are kept
+     * in memory, so iteration can be stopped at any time without reading
+     * remaining entries. The filter is checked before the key and the meta
+     * data of an entry are loaded. Expired entries are skipped.
+     * <p/>
+     * Entries committed or removed during iteration may be missed or returned.
+     *
+     * @param filter the filter or null to return all entries.
+     * @return the entries.
+     */
+    public Iterable<Entry<K>> entries(final EntryFilter filter) {
+        return new Iterable<Entry<K>>() {
+            @Override
+            public Iterator<Entry<K>> iterator() {
+                return new EntryWalker<Entry<K>>(filter) {
+                    @Override
+                    protected Entry<K> load(File file, Entry<K> entry) throws IOException {
+                        return entry != null ? entry : new Entry<K>(DiskCacheCore.this, file);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns all keys of the cache.
+     *
+     * @return the keys.
+     * @see #keys(EntryFilter)
+     */
+    public Iterable<K> keys() {
+        return keys(null);
+    }
+
+    /**
+     * Returns keys of entries of the cache accepted by the filter.
+     * Keys are read lazily like entries are, meta data is not loaded.
+     *
+     * @param filter the filter or null to return all keys.
+     * @return the keys.
+     * @see #entries(EntryFilter)
+     */
+    public Iterable<K> keys(final EntryFilter filter) {
+        return new Iterable<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return new EntryWalker<K>(filter) {
+                    @Override
+                    protected K load(File file, Entry<K> entry) throws IOException {
+                        return entry != null ? entry.getKey() : DiskCacheEntry.readKey(file, serializer);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Searches cache entries having the value of the meta data field.
+     * <p/>
+     * If the field is indexed only entries referred by the index are read,
+     * otherwise all entries of the cache are checked. Expired entries are
+     * skipped.
+     *
+     * @param field the meta data field.
+     * @param value the value of the field.
+     * @return the list of found entries.
+     * @see #setIndexedFields(Set)
+     */
+    public List<Entry<K>> searchWhere(String field, Serializable value) {
+        if (field == null || value == null) {
+            throw new NullPointerException("field and value cannot be null");
+        }
+
+        cleaner.access(false, getCleanTimeDelay(), getCleanModificationCount());
+
+        List<Entry<K>> entries = new ArrayList<Entry<K>>();
+        if (!getIndexedFields().contains(field)) {
+            for (Entry<K> entry : entries()) {
+                if (matches(entry, field, value)) {
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        }
+
+        for (File file : fieldIndex.find(field, value)) {
+            Entry<K> entry;
+            try {
+                entry = new Entry<K>(this, file);
+            } catch (Exception e) {
+                // a marker of a missing entry is pruned by cleaning
+                continue;
+            }
+            if (!entry.isExpired() && matches(entry, field, value)) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private static boolean matches(Entry<?> entry, String field, Serializable value) {
+        MetaData metaData = entry.getMetaData();
+        return metaData != null && value.equals(metaData.get(field));
+    }
+
     /**
      * Tries to find an entry by the specified key and
      * creates a new one if nothing was found.
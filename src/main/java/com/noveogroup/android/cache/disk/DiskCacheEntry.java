@@ -26,10 +26,10 @@
 
 package com.noveogroup.android.cache.disk;
 
-import com.noveogroup.android.cache.io.DefaultSerializer;
 import com.noveogroup.android.cache.io.InputSource;
 import com.noveogroup.android.cache.io.OutputSource;
 import com.noveogroup.android.cache.io.Serializer;
+import com.noveogroup.android.cache.util.MurmurHash3;
 
 import java.io.*;
 
@@ -41,45 +41,286 @@ import java.io.*;
  */
 class DiskCacheEntry<K> {
 
-    private static <K> void save(DiskCacheEntry<K> entry, File file, Serializer<K> keySerializer) throws IOException {
-        RandomAccessFile accessFile = null;
+    /**
+     * Value of deadline meaning that the entry never expires.
+     */
+    public static final long NO_DEADLINE = -1;
+
+    /**
+     * Marks entry files having a versioned header. Entry files written
+     * by old versions start with a length of a key that is never negative.
+     */
+    private static final long HEADER_MAGIC = 0xCE4F56454F434143L;
+    private static final int HEADER_VERSION = 3;
+
+    /**
+     * The first version of the header containing a fingerprint of the key.
+     */
+    private static final int HEADER_VERSION_FINGERPRINT = 2;
+
+    /**
+     * The first version of the header containing size of the value file.
+     */
+    private static final int HEADER_VERSION_VALUE_SIZE = 3;
+
+    /**
+     * Size of the header up to the serialized key: magic, version,
+     * create time, access time, deadline, fingerprint, value size and key length.
+     * Headers of the version 2 have no value size.
+     */
+    static final int MATCH_HEADER_SIZE = 8 + 4 + 8 + 8 + 8 + 8 + 8 + 8;
+
+    /**
+     * The entry file contains the key.
+     */
+    static final int MATCH_YES = 1;
+    /**
+     * The entry file doesn't contain the key.
+     */
+    static final int MATCH_NO = 0;
+    /**
+     * The entry file has no fingerprint, the key should be compared after loading.
+     */
+    static final int MATCH_UNKNOWN = -1;
+
+    /**
+     * Serializes a key to a byte array.
+     *
+     * @param key           the key.
+     * @param keySerializer the key serializer.
+     * @param <K>           a type of the key.
+     * @return the serialized key.
+     * @throws IOException if I/O error occurred.
+     */
+    static <K> byte[] serializeKey(K key, Serializer<K> keySerializer) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        keySerializer.save(new OutputSource() {
+            @Override
+            public OutputStream openOutputStream() throws IOException {
+                return outputStream;
+            }
+        }, key);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Calculates a fingerprint of a serialized key.
+     *
+     * @param keyBytes the serialized key.
+     * @return the fingerprint.
+     */
+    static long fingerprint(byte[] keyBytes) {
+        return MurmurHash3.hash64(keyBytes);
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | bytes[offset + i] & 0xFF;
+        }
+        return value;
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = value << 8 | bytes[offset + i] & 0xFF;
+        }
+        return value;
+    }
+
+    /**
+     * Checks if an entry file contains the specified key comparing
+     * its fingerprint and serialized bytes. The header is read with
+     * a single read into the provided buffer, the key is not deserialized.
+     *
+     * @param file        the entry file.
+     * @param fingerprint the fingerprint of the key.
+     * @param keyBytes    the serialized key.
+     * @param buffer      a buffer of at least {@link #MATCH_HEADER_SIZE} plus length of the key bytes.
+     * @return {@link #MATCH_YES}, {@link #MATCH_NO} or {@link #MATCH_UNKNOWN}.
+     * @throws IOException if I/O error occurred.
+     */
+    static int match(File file, long fingerprint, byte[] keyBytes, byte[] buffer) throws IOException {
+        int length = MATCH_HEADER_SIZE + keyBytes.length;
+        int count = 0;
+        FileInputStream inputStream = new FileInputStream(file);
         try {
-            accessFile = new RandomAccessFile(file, "rw");
-            final RandomAccessFile randomAccessFile = accessFile;
+            while (count < length) {
+                int read = inputStream.read(buffer, count, length - count);
+                if (read < 0) {
+                    break;
+                }
+                count += read;
+            }
+        } finally {
+            inputStream.close();
+        }
 
-            // write a stub for length of a key
-            final long keyLengthPosition = accessFile.getFilePointer();
-            accessFile.writeLong(0);
+        if (count < 12 || getLong(buffer, 0) != HEADER_MAGIC || getInt(buffer, 8) < HEADER_VERSION_FINGERPRINT) {
+            return MATCH_UNKNOWN;
+        }
+        int keyLengthOffset = getInt(buffer, 8) >= HEADER_VERSION_VALUE_SIZE ? 52 : 44;
+        int keyOffset = keyLengthOffset + 8;
+        if (count < keyOffset + keyBytes.length
+                || getLong(buffer, 36) != fingerprint
+                || getLong(buffer, keyLengthOffset) != keyBytes.length) {
+            return MATCH_NO;
+        }
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (buffer[keyOffset + i] != keyBytes[i]) {
+                return MATCH_NO;
+            }
+        }
+        return MATCH_YES;
+    }
+
+    /**
+     * Reads a fingerprint of the key of an entry file. Entry files having
+     * no fingerprint in the header are loaded to calculate it.
+     *
+     * @param file          the entry file.
+     * @param keySerializer the key serializer.
+     * @param buffer        a buffer of at least {@link #MATCH_HEADER_SIZE} bytes.
+     * @param <K>           a type of the key.
+     * @return the fingerprint.
+     * @throws IOException if I/O error occurred.
+     */
+    static <K> long readFingerprint(File file, Serializer<K> keySerializer, byte[] buffer) throws IOException {
+        int count = 0;
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            while (count < MATCH_HEADER_SIZE) {
+                int read = inputStream.read(buffer, count, MATCH_HEADER_SIZE - count);
+                if (read < 0) {
+                    break;
+                }
+                count += read;
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        if (count >= 44 && getLong(buffer, 0) == HEADER_MAGIC
+                && getInt(buffer, 8) >= HEADER_VERSION_FINGERPRINT) {
+            return getLong(buffer, 36);
+        } else {
+            DiskCacheEntry<K> entry = new DiskCacheEntry<K>();
+            entry.loadEntry(file, keySerializer);
+            return entry.getFingerprint();
+        }
+    }
+
+    /**
+     * Reads header fields of an entry file without loading the key
+     * and the meta data.
+     *
+     * @param file   the entry file.
+     * @param buffer a buffer of at least {@link #MATCH_HEADER_SIZE} bytes.
+     * @return the header or null if the entry file has no value size in the header.
+     * @throws IOException if I/O error occurred.
+     */
+    static DiskCacheCore.EntryHeader readHeader(File file, byte[] buffer) throws IOException {
+        int count = 0;
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            while (count < MATCH_HEADER_SIZE) {
+                int read = inputStream.read(buffer, count, MATCH_HEADER_SIZE - count);
+                if (read < 0) {
+                    break;
+                }
+                count += read;
+            }
+        } finally {
+            inputStream.close();
+        }
 
-            // write the key
-            final long keyPosition = accessFile.getFilePointer();
-            keySerializer.save(new OutputSource() {
+        if (count == MATCH_HEADER_SIZE && getLong(buffer, 0) == HEADER_MAGIC
+                && getInt(buffer, 8) >= HEADER_VERSION_VALUE_SIZE) {
+            return new DiskCacheCore.EntryHeader(getLong(buffer, 12), getLong(buffer, 20),
+                    getLong(buffer, 28), getLong(buffer, 44));
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the key of an entry file without loading the meta data.
+     *
+     * @param file          the entry file.
+     * @param keySerializer the key serializer.
+     * @param <K>           a type of the key.
+     * @return the key.
+     * @throws IOException if I/O error occurred.
+     */
+    static <K> K readKey(File file, Serializer<K> keySerializer) throws IOException {
+        RandomAccessFile accessFile = new RandomAccessFile(file, "r");
+        try {
+            long keyLength = accessFile.readLong();
+            if (keyLength == HEADER_MAGIC) {
+                int version = accessFile.readInt();
+                if (version > HEADER_VERSION) {
+                    throw new IOException("unsupported version of entry file: " + version);
+                }
+                // skip times and optional fields
+                int skip = 8 + 8 + 8;
+                if (version >= HEADER_VERSION_FINGERPRINT) {
+                    skip += 8;
+                }
+                if (version >= HEADER_VERSION_VALUE_SIZE) {
+                    skip += 8;
+                }
+                accessFile.seek(accessFile.getFilePointer() + skip);
+                keyLength = accessFile.readLong();
+            }
+            if (keyLength < 0 || keyLength > Integer.MAX_VALUE) {
+                throw new IOException("illegal length of a key: " + keyLength);
+            }
+
+            final byte[] keyBytes = new byte[(int) keyLength];
+            accessFile.readFully(keyBytes);
+            return keySerializer.load(new InputSource() {
                 @Override
-                public OutputStream openOutputStream() throws IOException {
-                    return new OutputStreamAdapter(randomAccessFile, keyPosition) {
-                        @Override
-                        protected void onClose() throws IOException {
-                            long keyLength = randomAccessFile.getFilePointer() - keyPosition;
-                            randomAccessFile.seek(keyLengthPosition);
-                            randomAccessFile.writeLong(keyLength);
-                        }
-                    };
+                public InputStream openInputStream() throws IOException {
+                    return new ByteArrayInputStream(keyBytes);
                 }
-            }, entry.getKey());
-            randomAccessFile.seek(keyLengthPosition);
-            final long keyLength = accessFile.readLong();
-            accessFile.seek(keyPosition + keyLength);
+            });
+        } finally {
+            accessFile.close();
+        }
+    }
 
-            // write create time and access time
-            accessFile.writeLong(entry.getCreateTime());
-            accessFile.writeLong(entry.getAccessTime());
+    private static <K> void save(DiskCacheEntry<K> entry, File file, Serializer<K> keySerializer) throws IOException {
+        RandomAccessFile accessFile = null;
+        try {
+            accessFile = new RandomAccessFile(file, "rw");
+            final RandomAccessFile randomAccessFile = accessFile;
+
+            // serialize the key
+            byte[] keyBytes = serializeKey(entry.getKey(), keySerializer);
+            entry.setFingerprint(fingerprint(keyBytes));
+
+            // write the header and the key at once
+            ByteArrayOutputStream headerStream = new ByteArrayOutputStream(MATCH_HEADER_SIZE + keyBytes.length);
+            DataOutputStream header = new DataOutputStream(headerStream);
+            header.writeLong(HEADER_MAGIC);
+            header.writeInt(HEADER_VERSION);
+            header.writeLong(entry.getCreateTime());
+            header.writeLong(entry.getAccessTime());
+            header.writeLong(entry.getDeadline());
+            header.writeLong(entry.getFingerprint());
+            header.writeLong(entry.getValueSize());
+            header.writeLong(keyBytes.length);
+            header.write(keyBytes);
+            header.flush();
+            accessFile.write(headerStream.toByteArray());
 
             // write a stub for length of a meta data
             final long metaDataLengthPosition = accessFile.getFilePointer();
             accessFile.writeLong(0);
 
             // write the meta data
-            DefaultSerializer<MetaData> metaDataSerializer = new DefaultSerializer<MetaData>();
+            MetaDataCodec metaDataSerializer = new MetaDataCodec();
             final long metaDataPosition = accessFile.getFilePointer();
             metaDataSerializer.save(new OutputSource() {
                 @Override
@@ -119,28 +360,63 @@ class DiskCacheEntry<K> {
             accessFile = new RandomAccessFile(file, "rw");
             final RandomAccessFile randomAccessFile = accessFile;
 
-            // read length of a key
-            final long keyLength = accessFile.readLong();
+            // read the header
+            final long keyLength;
+            final long header = accessFile.readLong();
+            boolean hasFingerprint = false;
+            boolean hasValueSize = false;
+            if (header == HEADER_MAGIC) {
+                int version = accessFile.readInt();
+                if (version > HEADER_VERSION) {
+                    throw new IOException("unsupported version of entry file: " + version);
+                }
+                entry.setCreateTime(accessFile.readLong());
+                entry.setAccessTime(accessFile.readLong());
+                entry.setDeadline(accessFile.readLong());
+                if (version >= HEADER_VERSION_FINGERPRINT) {
+                    entry.setFingerprint(accessFile.readLong());
+                    hasFingerprint = true;
+                }
+                if (version >= HEADER_VERSION_VALUE_SIZE) {
+                    entry.setValueSize(accessFile.readLong());
+                    hasValueSize = true;
+                }
+
+                // read length of a key
+                keyLength = accessFile.readLong();
+            } else {
+                // an old entry file starts with length of a key
+                entry.setDeadline(NO_DEADLINE);
+                keyLength = header;
+            }
+            if (keyLength < 0 || keyLength > Integer.MAX_VALUE) {
+                throw new IOException("illegal length of a key: " + keyLength);
+            }
 
             // read the key
-            final long keyPosition = accessFile.getFilePointer();
+            final byte[] keyBytes = new byte[(int) keyLength];
+            accessFile.readFully(keyBytes);
+            if (!hasFingerprint) {
+                entry.setFingerprint(fingerprint(keyBytes));
+            }
             entry.setKey(keySerializer.load(new InputSource() {
                 @Override
                 public InputStream openInputStream() throws IOException {
-                    return new InputStreamAdapter(randomAccessFile, keyPosition, keyPosition + keyLength);
+                    return new ByteArrayInputStream(keyBytes);
                 }
             }));
-            accessFile.seek(keyPosition + keyLength);
 
-            // read create time and access time
-            entry.setCreateTime(accessFile.readLong());
-            entry.setAccessTime(accessFile.readLong());
+            // read create time and access time of an old entry file
+            if (header != HEADER_MAGIC) {
+                entry.setCreateTime(accessFile.readLong());
+                entry.setAccessTime(accessFile.readLong());
+            }
 
             // read length of a meta data
             final long metaDataLength = accessFile.readLong();
 
             // read the meta data
-            DefaultSerializer<MetaData> metaDataSerializer = new DefaultSerializer<MetaData>();
+            MetaDataCodec metaDataSerializer = new MetaDataCodec();
             final long metaDataPosition = accessFile.getFilePointer();
             entry.setMetaData(metaDataSerializer.load(new InputSource() {
                 @Override
@@ -153,14 +429,17 @@ class DiskCacheEntry<K> {
             // read file path
             int pathLength = accessFile.readInt();
             if (pathLength < 0) {
-                entry.setFile(null);
+                entry.file = null;
             } else {
                 long pathPosition = accessFile.getFilePointer();
                 InputStreamAdapter pathInputStream = new InputStreamAdapter(accessFile, pathPosition, pathPosition + pathLength);
                 byte[] pathBytes = Utils.readFully(pathInputStream);
-                entry.setFile(new File(new String(pathBytes, "UTF-8")));
+                entry.file = new File(new String(pathBytes, "UTF-8"));
                 accessFile.seek(pathPosition + pathLength);
             }
+            if (!hasValueSize) {
+                entry.setValueSize(entry.getFile() == null ? 0 : entry.getFile().length());
+            }
         } finally {
             if (accessFile != null) {
                 accessFile.close();
@@ -171,6 +450,9 @@ class DiskCacheEntry<K> {
     private K key;
     private long createTime;
     private long accessTime;
+    private long deadline = NO_DEADLINE;
+    private long fingerprint;
+    private long valueSize;
     private MetaData metaData;
     private File file;
 
@@ -234,6 +516,62 @@ class DiskCacheEntry<K> {
         this.accessTime = accessTime;
     }
 
+    /**
+     * Returns a time after which the entry is expired.
+     *
+     * @return the deadline or {@link #NO_DEADLINE}.
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Sets a time after which the entry is expired.
+     *
+     * @param deadline new deadline or {@link #NO_DEADLINE}.
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Returns a fingerprint of the serialized key.
+     * The fingerprint is calculated when the entry is saved or loaded.
+     *
+     * @return the fingerprint.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Sets a fingerprint of the serialized key.
+     *
+     * @param fingerprint new fingerprint.
+     */
+    public void setFingerprint(long fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Returns size of the value file.
+     * The size is taken when the file is set and saved with the entry.
+     *
+     * @return the size in bytes or 0 if the entry has no file.
+     */
+    public long getValueSize() {
+        return valueSize;
+    }
+
+    /**
+     * Sets size of the value file.
+     *
+     * @param valueSize new size in bytes.
+     */
+    public void setValueSize(long valueSize) {
+        this.valueSize = valueSize;
+    }
+
     /**
      * Returns meta data bundle.
      *
@@ -262,12 +600,14 @@ class DiskCacheEntry<K> {
     }
 
     /**
-     * Sets new file containing the content.
+     * Sets new file containing the content and takes its size.
+     * The file should be written before.
      *
      * @param file new file containing the content or null.
      */
     public void setFile(File file) {
         this.file = file;
+        this.valueSize = file == null ? 0 : file.length();
     }
 
     /**
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import android.util.Log;
+import com.noveogroup.android.cache.util.MurmurHash3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * FieldIndex maps values of meta data fields to entry files using
+ * empty marker files.
+ * <p/>
+ * A marker of an entry is placed to a directory of the field and the value
+ * and is named after the path of the entry file relative to the meta data
+ * directory. Values are compared by their string representations, so
+ * markers may refer entries having other values, and markers of removed
+ * or changed entries may remain until pruning. Entries found by markers
+ * should be checked after loading.
+ */
+class FieldIndex {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final char SEPARATOR = '.';
+
+    private final File indexDirectory;
+    private final File metaDataDirectory;
+
+    /**
+     * Creates new field index.
+     *
+     * @param indexDirectory    the directory of markers.
+     * @param metaDataDirectory the directory of entry files.
+     */
+    public FieldIndex(File indexDirectory, File metaDataDirectory) {
+        this.indexDirectory = indexDirectory;
+        this.metaDataDirectory = metaDataDirectory;
+    }
+
+    private static String hash(String string) {
+        try {
+            return String.format("%016X", MurmurHash3.hash64(string.getBytes("UTF-8")));
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private File getValueDirectory(String field, Object value) {
+        return new File(new File(indexDirectory, hash(field)), hash(String.valueOf(value)));
+    }
+
+    private String getMarkerName(File entryFile) {
+        String root = metaDataDirectory.getPath() + File.separatorChar;
+        String path = entryFile.getPath();
+        if (!path.startsWith(root)) {
+            return null;
+        }
+        return path.substring(root.length()).replace(File.separatorChar, SEPARATOR);
+    }
+
+    private File getEntryFile(File marker) {
+        return new File(metaDataDirectory, marker.getName().replace(SEPARATOR, File.separatorChar));
+    }
+
+    /**
+     * Adds markers of the entry for all indexed fields it contains.
+     *
+     * @param fields    the indexed fields.
+     * @param metaData  the meta data of the entry.
+     * @param entryFile the entry file.
+     * @throws IOException if a marker cannot be created.
+     */
+    public void add(Set<String> fields, MetaData metaData, File entryFile) throws IOException {
+        String name = getMarkerName(entryFile);
+        if (name == null || metaData == null) {
+            return;
+        }
+
+        for (String field : fields) {
+            Object value = metaData.get(field);
+            if (value == null) {
+                continue;
+            }
+
+            File directory = getValueDirectory(field, value);
+            File marker = new File(directory, name);
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    marker.createNewFile();
+                    break;
+                } catch (IOException e) {
+                    // the directory could be deleted by erasing or pruning
+                    if (attempt + 1 >= MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    directory.mkdirs();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes markers of the entry for all indexed fields it contains.
+     *
+     * @param fields    the indexed fields.
+     * @param metaData  the meta data of the entry.
+     * @param entryFile the entry file.
+     */
+    public void remove(Set<String> fields, MetaData metaData, File entryFile) {
+        String name = getMarkerName(entryFile);
+        if (name == null || metaData == null) {
+            return;
+        }
+
+        for (String field : fields) {
+            Object value = metaData.get(field);
+            if (value != null) {
+                new File(getValueDirectory(field, value), name).delete();
+            }
+        }
+    }
+
+    /**
+     * Returns entry files referred by markers of the value of the field.
+     *
+     * @param field the field.
+     * @param value the value.
+     * @return the entry files.
+     */
+    public List<File> find(String field, Object value) {
+        File[] markers = getValueDirectory(field, value).listFiles();
+        List<File> entryFiles = new ArrayList<File>(markers == null ? 0 : markers.length);
+        if (markers != null) {
+            for (File marker : markers) {
+                entryFiles.add(getEntryFile(marker));
+            }
+        }
+        return entryFiles;
+    }
+
+    /**
+     * Deletes markers of missing entry files and empty directories.
+     */
+    public void prune() {
+        File[] fieldDirectories = indexDirectory.listFiles();
+        if (fieldDirectories == null) {
+            return;
+        }
+
+        int count = 0;
+        for (File fieldDirectory : fieldDirectories) {
+            File[] valueDirectories = fieldDirectory.listFiles();
+            if (valueDirectories == null) {
+                continue;
+            }
+            for (File valueDirectory : valueDirectories) {
+                File[] markers = valueDirectory.listFiles();
+                if (markers == null) {
+                    continue;
+                }
+                for (File marker : markers) {
+                    if (!getEntryFile(marker).exists() && marker.delete()) {
+                        count++;
+                    }
+                }
+                // deleted only if it is empty
+                valueDirectory.delete();
+            }
+            fieldDirectory.delete();
+        }
+        Log.v(DiskCache.TAG, "pruned field index markers: " + count);
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import android.util.Log;
+import com.noveogroup.android.cache.util.DaemonThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileSyncer flushes files to the storage in background threads.
+ * <p/>
+ * Requests received while a batch is being synced are synced together as
+ * the next batch, so concurrent commits share a single wait for the storage.
+ * Files of a batch are synced in parallel to let the file system merge
+ * their journal commits. Background requests are additionally collected
+ * during a commit window unless a commit waits for its files.
+ */
+class FileSyncer {
+
+    private static final int SYNC_PARALLELISM = 4;
+
+    private static class Request {
+
+        private final List<File> files;
+        private final boolean waiting;
+        private boolean done = false;
+        private IOException exception = null;
+
+        public Request(List<File> files, boolean waiting) {
+            this.files = files;
+            this.waiting = waiting;
+        }
+
+    }
+
+    private final Object lock = new Object();
+    private final DaemonThreadFactory threadFactory;
+    private List<Request> requests = new ArrayList<Request>();
+    private int waitingCount = 0;
+    private Thread thread = null;
+    private ExecutorService executor = null;
+    private volatile long window = 0;
+
+    /**
+     * Creates new instance of file syncer.
+     *
+     * @param threadFactory a factory of the background threads.
+     */
+    public FileSyncer(DaemonThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    private Request submit(List<File> files, long window, boolean waiting) {
+        Request request = new Request(files, waiting);
+        synchronized (lock) {
+            this.window = window;
+            requests.add(request);
+            if (waiting) {
+                waitingCount++;
+            }
+            if (thread == null) {
+                executor = Executors.newFixedThreadPool(SYNC_PARALLELISM, threadFactory);
+                thread = threadFactory.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        loop();
+                    }
+                });
+                thread.start();
+            }
+            lock.notifyAll();
+        }
+        return request;
+    }
+
+    /**
+     * Schedules sync of the files and returns immediately.
+     *
+     * @param files  the files.
+     * @param window a time in milliseconds to wait for other requests.
+     */
+    public void syncLater(List<File> files, long window) {
+        submit(files, window, false);
+    }
+
+    /**
+     * Syncs the files together with files of concurrent requests
+     * and waits for completion. The sync is not delayed by the window.
+     *
+     * @param files  the files.
+     * @param window a time in milliseconds to wait for other background requests.
+     * @throws IOException if I/O error occurred.
+     */
+    public void sync(List<File> files, long window) throws IOException {
+        Request request = submit(files, window, true);
+        synchronized (lock) {
+            try {
+                while (!request.done) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("sync is interrupted");
+            }
+        }
+        if (request.exception != null) {
+            throw request.exception;
+        }
+    }
+
+    private void loop() {
+        while (true) {
+            List<Request> batch;
+            try {
+                synchronized (lock) {
+                    while (requests.isEmpty()) {
+                        lock.wait();
+                    }
+
+                    // collect background requests until a commit waits for them
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(window);
+                    long remaining;
+                    while (waitingCount == 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    }
+
+                    batch = requests;
+                    requests = new ArrayList<Request>();
+                    waitingCount = 0;
+                }
+            } catch (InterruptedException e) {
+                Log.w(DiskCache.TAG, "file syncer is interrupted", e);
+                continue;
+            }
+
+            syncBatch(batch);
+
+            synchronized (lock) {
+                for (Request request : batch) {
+                    request.done = true;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void syncBatch(List<Request> batch) {
+        List<Future<IOException>> futures = new ArrayList<Future<IOException>>();
+        List<Request> owners = new ArrayList<Request>();
+        for (Request request : batch) {
+            for (final File file : request.files) {
+                futures.add(executor.submit(new Callable<IOException>() {
+                    @Override
+                    public IOException call() {
+                        try {
+                            Utils.sync(file);
+                            return null;
+                        } catch (IOException e) {
+                            Log.w(DiskCache.TAG, "cannot sync file: " + file, e);
+                            return e;
+                        }
+                    }
+                }));
+                owners.add(request);
+            }
+        }
+
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++) {
+            IOException exception;
+            while (true) {
+                try {
+                    exception = futures.get(i).get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    exception = new IOException("cannot sync file");
+                    exception.initCause(e.getCause());
+                    break;
+                }
+            }
+            Request request = owners.get(i);
+            if (exception != null && request.exception == null) {
+                request.exception = exception;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -26,12 +26,15 @@
 
 package com.noveogroup.android.cache.disk;
 
+import com.noveogroup.android.cache.util.BufferPool;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 
 /**
  * InputStreamAdapter can be used to represent RandomAccessFile as a InputStream object.
+ * Small reads are served from a read-ahead buffer taken from {@link BufferPool}.
  */
 class InputStreamAdapter extends InputStream {
 
@@ -40,6 +43,10 @@ class InputStreamAdapter extends InputStream {
     private final RandomAccessFile randomAccessFile;
     private long currentPosition;
     private final long endPosition;
+    private BufferPool pool;
+    private byte[] buffer;
+    private int bufferPosition;
+    private int bufferCount;
 
     /**
      * Creates new adapter.
@@ -95,10 +102,45 @@ class InputStreamAdapter extends InputStream {
     protected void onClose() throws IOException {
     }
 
+    private void releaseBuffer() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+            pool = null;
+        }
+        bufferPosition = 0;
+        bufferCount = 0;
+    }
+
+    /**
+     * Fills the buffer from the current position.
+     *
+     * @return true if there are buffered bytes.
+     */
+    private boolean fillBuffer() throws IOException {
+        if (bufferPosition < bufferCount) {
+            return true;
+        }
+        int available = available();
+        if (available <= 0) {
+            return false;
+        }
+        if (buffer == null) {
+            pool = BufferPool.getInstance();
+            buffer = pool.acquire();
+        }
+        randomAccessFile.seek(currentPosition);
+        int read = randomAccessFile.read(buffer, 0, Math.min(buffer.length, available));
+        bufferPosition = 0;
+        bufferCount = Math.max(0, read);
+        return bufferCount > 0;
+    }
+
     @Override
     public void close() throws IOException {
         synchronized (lock) {
             if (!isClosed) {
+                releaseBuffer();
                 isClosed = true;
                 onClose();
             }
@@ -108,11 +150,9 @@ class InputStreamAdapter extends InputStream {
     @Override
     public int read() throws IOException {
         synchronized (lock) {
-            if (available() > 0) {
-                randomAccessFile.seek(currentPosition);
-                int read = randomAccessFile.read();
-                currentPosition = randomAccessFile.getFilePointer();
-                return read;
+            if (fillBuffer()) {
+                currentPosition++;
+                return buffer[bufferPosition++] & 0xFF;
             } else {
                 return -1;
             }
@@ -128,24 +168,41 @@ class InputStreamAdapter extends InputStream {
     public int read(byte[] b, int off, int len) throws IOException {
         synchronized (lock) {
             int available = available();
-            if (available > 0) {
+            if (available <= 0) {
+                return -1;
+            }
+            if (bufferPosition >= bufferCount && len >= BufferPool.getInstance().getBufferSize()) {
+                // large reads go directly to the file
                 randomAccessFile.seek(currentPosition);
                 int read = randomAccessFile.read(b, off, Math.min(len, available));
-                currentPosition = randomAccessFile.getFilePointer();
+                if (read > 0) {
+                    currentPosition += read;
+                }
                 return read;
-            } else {
+            }
+            if (!fillBuffer()) {
                 return -1;
             }
+            int read = Math.min(len, bufferCount - bufferPosition);
+            System.arraycopy(buffer, bufferPosition, b, off, read);
+            bufferPosition += read;
+            currentPosition += read;
+            return read;
         }
     }
 
     @Override
     public long skip(long n) throws IOException {
         synchronized (lock) {
-            int available = available();
-            n = Math.min(n, available);
-            randomAccessFile.seek(currentPosition + n);
-            currentPosition = randomAccessFile.getFilePointer();
+            n = Math.max(0, Math.min(n, available()));
+            int buffered = bufferCount - bufferPosition;
+            if (n < buffered) {
+                bufferPosition += (int) n;
+            } else {
+                bufferPosition = 0;
+                bufferCount = 0;
+            }
+            currentPosition += n;
             return n;
         }
     }
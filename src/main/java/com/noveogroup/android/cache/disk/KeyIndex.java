@@ -0,0 +1,521 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import android.util.Log;
+import com.noveogroup.android.cache.util.Clock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of fingerprints of keys of existing entries based on
+ * a counting {@link BloomFilter}.
+ * <p/>
+ * The index may contain fingerprints of removed entries but never
+ * misses fingerprints of entries committed by this instance, so absence
+ * of a fingerprint means absence of an entry while no other instance
+ * has added entries. Fingerprints are added on commits of new
+ * entry files and removed on removal of entries, the whole filter is
+ * rebuilt by scans. Fingerprints added during a scan are kept after it.
+ * <p/>
+ * Instances sharing the cache directory increment a {@link ChangeStamp}
+ * after commits of new entry files, concurrent commits share one increment.
+ * The stamp exists only while key indexes are enabled, so commits don't
+ * touch it otherwise. The index tracks the value of the stamp
+ * it knows all entries at. The value is taken when a scan starts and is
+ * advanced by increments of this index only. Absence of a fingerprint
+ * is trusted only while the stamp keeps this value. Lookups reread the
+ * stamp at most once per {@link #STAMP_READ_INTERVAL}, so entries added
+ * by other instances may be missed for that time.
+ * <p/>
+ * The index is saved to a file after scans together with the value of
+ * the stamp. The file is loaded instead of scanning only if the stamp
+ * still has the same value, so it is never older than the entries.
+ * <p/>
+ * The index is not ready until the first scan or load is finished.
+ */
+class KeyIndex {
+
+    /**
+     * Minimum time between rereads of the change stamp by lookups in milliseconds.
+     */
+    public static final long STAMP_READ_INTERVAL = 1000;
+
+    private static final int FILE_MAGIC = 0x4B494458;
+    private static final int FILE_VERSION = 2;
+    private static final int MIN_EXPECTED_SIZE = 64;
+
+    /**
+     * Open addressing hash set of long values.
+     */
+    static class LongSet {
+
+        private static final float LOAD_FACTOR = 0.5f;
+
+        private long[] values;
+        private boolean containsZero;
+        private int size;
+
+        public LongSet() {
+            this(16);
+        }
+
+        public LongSet(int expectedSize) {
+            int capacity = 16;
+            while (capacity * LOAD_FACTOR < expectedSize) {
+                capacity <<= 1;
+            }
+            this.values = new long[capacity];
+        }
+
+        private static int index(long value, int mask) {
+            long hash = value * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ hash >>> 32) & mask;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void add(long value) {
+            if (value == 0) {
+                if (!containsZero) {
+                    containsZero = true;
+                    size++;
+                }
+                return;
+            }
+            if (size + 1 > values.length * LOAD_FACTOR) {
+                grow();
+            }
+            int mask = values.length - 1;
+            int i = index(value, mask);
+            for (; values[i] != 0; i = (i + 1) & mask) {
+                if (values[i] == value) {
+                    return;
+                }
+            }
+            values[i] = value;
+            size++;
+        }
+
+        public boolean contains(long value) {
+            if (value == 0) {
+                return containsZero;
+            }
+            int mask = values.length - 1;
+            for (int i = index(value, mask); values[i] != 0; i = (i + 1) & mask) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void addTo(BloomFilter filter) {
+            if (containsZero) {
+                filter.add(0);
+            }
+            for (long value : values) {
+                if (value != 0) {
+                    filter.add(value);
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldValues = values;
+            values = new long[oldValues.length * 2];
+            int mask = values.length - 1;
+            for (long value : oldValues) {
+                if (value != 0) {
+                    int i = index(value, mask);
+                    while (values[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    values[i] = value;
+                }
+            }
+        }
+
+    }
+
+    private final Object lock = new Object();
+    private final Object stampLock = new Object();
+    private final File file;
+    private final ChangeStamp stamp;
+    private final Clock clock;
+    private final AtomicLong stampReadTime;
+    private volatile long lastReadStamp = -1;
+    private BloomFilter filter = new BloomFilter(MIN_EXPECTED_SIZE);
+    private LongSet scanAdditions = null;
+    private LongSet scanIncrements = null;
+    private int scanCount = 0;
+    private long modificationCount = 0;
+    private long commitCount = 0;
+    private long incrementedCommitCount = 0;
+    private long knownStamp = -1;
+    private volatile boolean ready = false;
+    private volatile long buildTime = -1;
+
+    /**
+     * Creates new index.
+     *
+     * @param file  a file to save the index to.
+     * @param stamp the change stamp of the cache directory.
+     * @param clock the clock to schedule rereads of the stamp.
+     */
+    public KeyIndex(File file, ChangeStamp stamp, Clock clock) {
+        this.file = file;
+        this.stamp = stamp;
+        this.clock = clock;
+        this.stampReadTime = new AtomicLong(clock.uptimeMillis() - STAMP_READ_INTERVAL);
+    }
+
+    /**
+     * Creates new empty filter for the specified count of fingerprints.
+     */
+    public static BloomFilter createFilter(int expectedSize) {
+        return new BloomFilter(Math.max(MIN_EXPECTED_SIZE, expectedSize));
+    }
+
+    /**
+     * Returns true if the first scan or load is finished.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns duration of the first scan or load in milliseconds or -1 if it isn't finished.
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Returns approximate count of fingerprints in the index.
+     */
+    public int size() {
+        synchronized (lock) {
+            return filter.size();
+        }
+    }
+
+    /**
+     * Checks if the index may contain the fingerprint. A fingerprint
+     * missing in the filter is considered contained if other instances
+     * have added entries since the index was built.
+     */
+    public boolean contains(long fingerprint) {
+        long knownStamp;
+        synchronized (lock) {
+            if (filter.mightContain(fingerprint)) {
+                return true;
+            }
+            knownStamp = this.knownStamp;
+        }
+        return knownStamp < 0 || readStamp(false) != knownStamp;
+    }
+
+    /**
+     * Checks if no other instance has added entries since the index was built.
+     */
+    public boolean isCurrent() {
+        long knownStamp;
+        synchronized (lock) {
+            knownStamp = this.knownStamp;
+        }
+        return knownStamp >= 0 && readStamp(true) == knownStamp;
+    }
+
+    private long readStamp(boolean force) {
+        long time = clock.uptimeMillis();
+        long lastReadTime = stampReadTime.get();
+        if (!force && (time - lastReadTime < STAMP_READ_INTERVAL || !stampReadTime.compareAndSet(lastReadTime, time))) {
+            return lastReadStamp;
+        }
+        long value = stamp.read();
+        setLastReadStamp(value);
+        return value;
+    }
+
+    private void setLastReadStamp(long value) {
+        lastReadStamp = value;
+        stampReadTime.set(clock.uptimeMillis());
+    }
+
+    /**
+     * Adds the fingerprint of a new entry. Should be called before
+     * the entry becomes visible.
+     */
+    public void add(long fingerprint) {
+        synchronized (lock) {
+            modificationCount++;
+            filter.add(fingerprint);
+            if (scanAdditions != null) {
+                scanAdditions.add(fingerprint);
+            }
+        }
+    }
+
+    /**
+     * Increments the change stamp after a new entry became visible if
+     * the stamp exists. The fingerprint should be added by {@link #add(long)}
+     * before. An increment started after the entry became visible is enough,
+     * so commits waiting for a running increment share the next one.
+     */
+    public void commit(long fingerprint) {
+        if (!stamp.exists()) {
+            return;
+        }
+
+        long commitNumber;
+        synchronized (lock) {
+            commitNumber = ++commitCount;
+            if (scanAdditions != null) {
+                // the scan could miss the entry and take the incremented stamp
+                scanAdditions.add(fingerprint);
+            }
+        }
+
+        synchronized (stampLock) {
+            if (incrementedCommitCount >= commitNumber) {
+                return;
+            }
+
+            long lastCommitNumber;
+            synchronized (lock) {
+                lastCommitNumber = commitCount;
+            }
+            long previous;
+            try {
+                previous = stamp.increment();
+            } catch (IOException e) {
+                Log.w(DiskCache.TAG, "cannot increment change stamp", e);
+                previous = -1;
+            }
+            synchronized (lock) {
+                knownStamp = previous >= 0 && knownStamp == previous ? ChangeStamp.next(previous) : -1;
+                if (scanIncrements != null && previous >= 0) {
+                    scanIncrements.add(previous);
+                }
+            }
+            setLastReadStamp(previous >= 0 ? ChangeStamp.next(previous) : -1);
+            incrementedCommitCount = lastCommitNumber;
+        }
+    }
+
+    /**
+     * Removes the fingerprint of a removed entry.
+     */
+    public void remove(long fingerprint) {
+        synchronized (lock) {
+            filter.remove(fingerprint);
+        }
+    }
+
+    /**
+     * Removes all fingerprints and deletes the change stamp.
+     * Should be called when all entries are deleted.
+     */
+    public void clear() {
+        synchronized (lock) {
+            file.delete();
+            modificationCount++;
+            filter = createFilter(0);
+            if (scanAdditions != null) {
+                scanAdditions = new LongSet();
+            }
+        }
+        deleteStamp();
+    }
+
+    /**
+     * Creates the change stamp, so other instances start to increment it.
+     */
+    public void createStamp() {
+        try {
+            stamp.create();
+        } catch (IOException e) {
+            Log.w(DiskCache.TAG, "cannot create change stamp", e);
+        }
+    }
+
+    /**
+     * Deletes the change stamp, so other instances stop to increment it.
+     * No index is trusted until the stamp is created again and the index
+     * is rebuilt.
+     */
+    public void deleteStamp() {
+        synchronized (stampLock) {
+            try {
+                stamp.delete();
+            } catch (IOException e) {
+                Log.w(DiskCache.TAG, "cannot delete change stamp", e);
+            }
+            synchronized (lock) {
+                knownStamp = -1;
+            }
+            setLastReadStamp(-1);
+        }
+    }
+
+    /**
+     * Starts tracking of fingerprints added during a scan.
+     *
+     * @return the value of the change stamp the scan starts at or -1.
+     */
+    public long beginScan() {
+        synchronized (stampLock) {
+            synchronized (lock) {
+                if (scanCount++ == 0) {
+                    scanAdditions = new LongSet();
+                    scanIncrements = new LongSet();
+                }
+            }
+            return readStamp(true);
+        }
+    }
+
+    /**
+     * Replaces the index with the scanned fingerprints and fingerprints
+     * added during the scan. If other scans are running the index is not
+     * replaced, the last finished scan will replace it.
+     *
+     * @param scanned   the fingerprints of scanned entries or null if the scan failed.
+     * @param scanTime  the duration of the scan in milliseconds.
+     * @param scanStamp the value returned by {@link #beginScan()}.
+     * @return true if the index has been replaced.
+     */
+    public boolean finishScan(BloomFilter scanned, long scanTime, long scanStamp) {
+        synchronized (lock) {
+            boolean replaced = false;
+            if (scanned != null && scanCount == 1) {
+                scanAdditions.addTo(scanned);
+                filter = scanned;
+                modificationCount++;
+                knownStamp = scanStamp;
+                while (knownStamp >= 0 && scanIncrements.contains(knownStamp)) {
+                    knownStamp = ChangeStamp.next(knownStamp);
+                }
+                replaced = true;
+                if (!ready) {
+                    buildTime = scanTime;
+                    ready = true;
+                }
+            }
+            if (--scanCount == 0) {
+                scanAdditions = null;
+                scanIncrements = null;
+            }
+            return replaced;
+        }
+    }
+
+    /**
+     * Loads the index saved by {@link #save()}.
+     *
+     * @param scanStamp the value returned by {@link #beginScan()}.
+     * @return the loaded filter or null if there is no index saved at the value of the stamp.
+     */
+    public BloomFilter load(long scanStamp) {
+        if (scanStamp < 0 || !file.exists()) {
+            return null;
+        }
+
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+                    return null;
+                }
+                if (input.readLong() != scanStamp) {
+                    // entries have been added after the index was saved
+                    return null;
+                }
+                return BloomFilter.read(input);
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            Log.v(DiskCache.TAG, "cannot load index file: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the index to the file if it is ready and knows
+     * the value of the change stamp.
+     */
+    public void save() {
+        BloomFilter snapshot;
+        long snapshotModificationCount;
+        long snapshotStamp;
+        synchronized (lock) {
+            if (!ready || scanCount > 0 || knownStamp < 0) {
+                return;
+            }
+            snapshot = filter.copy();
+            snapshotModificationCount = modificationCount;
+            snapshotStamp = knownStamp;
+        }
+
+        File tempFile = new File(file.getPath() + "-temp");
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                output.writeInt(FILE_MAGIC);
+                output.writeInt(FILE_VERSION);
+                output.writeLong(snapshotStamp);
+                snapshot.write(output);
+            } finally {
+                output.close();
+            }
+
+            synchronized (lock) {
+                // the index must not be older than entries
+                if (snapshotModificationCount == modificationCount && scanCount == 0) {
+                    tempFile.renameTo(file);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(DiskCache.TAG, "cannot save index file: " + file, e);
+        } finally {
+            Utils.delete(tempFile);
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * LockFile is a mutual exclusion lock shared by threads of the process
+ * and other processes using the same file.
+ * <p/>
+ * File locks are held by processes, so threads of the process are
+ * excluded by a semaphore of the file first. The lock isn't reentrant
+ * and may be released by any thread.
+ */
+class LockFile {
+
+    private static final Map<String, Semaphore> SEMAPHORES = new HashMap<String, Semaphore>();
+
+    private static Semaphore getSemaphore(File file) {
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException e) {
+            path = file.getAbsolutePath();
+        }
+        synchronized (SEMAPHORES) {
+            Semaphore semaphore = SEMAPHORES.get(path);
+            if (semaphore == null) {
+                semaphore = new Semaphore(1);
+                SEMAPHORES.put(path, semaphore);
+            }
+            return semaphore;
+        }
+    }
+
+    private final File file;
+    private final Semaphore semaphore;
+
+    // guarded by the semaphore
+    private RandomAccessFile randomAccessFile;
+    private FileLock fileLock;
+
+    /**
+     * Creates new lock using the specified file.
+     *
+     * @param file the lock file.
+     */
+    public LockFile(File file) {
+        this.file = file;
+        this.semaphore = getSemaphore(file);
+    }
+
+    /**
+     * Returns the lock file.
+     *
+     * @return the file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    private boolean lockFile(boolean wait) throws IOException {
+        file.getParentFile().mkdirs();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        FileLock fileLock = null;
+        try {
+            fileLock = wait ? randomAccessFile.getChannel().lock() : randomAccessFile.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            // the file is locked by another lock of the process
+            fileLock = null;
+        } finally {
+            if (fileLock == null) {
+                randomAccessFile.close();
+            }
+        }
+
+        if (fileLock == null) {
+            return false;
+        }
+        this.randomAccessFile = randomAccessFile;
+        this.fileLock = fileLock;
+        return true;
+    }
+
+    /**
+     * Acquires the lock if it is free.
+     *
+     * @return true if the lock was acquired.
+     * @throws IOException if I/O error occurred.
+     */
+    public boolean tryLock() throws IOException {
+        if (!semaphore.tryAcquire()) {
+            return false;
+        }
+
+        boolean success = false;
+        try {
+            success = lockFile(false);
+            return success;
+        } finally {
+            if (!success) {
+                semaphore.release();
+            }
+        }
+    }
+
+    /**
+     * Acquires the lock waiting until it is free.
+     *
+     * @throws IOException if I/O error occurred.
+     */
+    public void lock() throws IOException {
+        semaphore.acquireUninterruptibly();
+
+        boolean success = false;
+        try {
+            success = lockFile(true);
+            if (!success) {
+                throw new IOException("cannot lock file: " + file);
+            }
+        } finally {
+            if (!success) {
+                semaphore.release();
+            }
+        }
+    }
+
+    /**
+     * Releases the lock.
+     */
+    public void unlock() {
+        try {
+            try {
+                fileLock.release();
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            // closing the file releases the lock anyway
+        } finally {
+            fileLock = null;
+            randomAccessFile = null;
+            semaphore.release();
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import com.noveogroup.android.cache.io.DefaultSerializer;
+import com.noveogroup.android.cache.io.InputSource;
+import com.noveogroup.android.cache.io.OutputSource;
+import com.noveogroup.android.cache.io.Serializer;
+
+import java.io.*;
+import java.util.Map;
+
+/**
+ * Compact binary codec of {@link MetaData}.
+ * <p/>
+ * Values of common types (String, Long, Integer, Boolean and byte[])
+ * are written with a one byte tag, other values fall back to
+ * standard serialization. Meta data written by old versions using
+ * standard serialization of the whole map is recognized by
+ * the stream magic and is still readable.
+ */
+class MetaDataCodec implements Serializer<MetaData> {
+
+    private static final int STREAM_MAGIC = 0xACED;
+    private static final int MAGIC = 0x4D44;
+    private static final int VERSION = 1;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_LONG = 2;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_BOOLEAN = 4;
+    private static final int TAG_BYTES = 5;
+    private static final int TAG_SERIALIZABLE = 6;
+
+    private static final String CHARSET = "UTF-8";
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(CHARSET);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInput input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        byte[] bytes = readBytes(input);
+        return bytes == null ? null : new String(bytes, CHARSET);
+    }
+
+    private static void writeValue(DataOutput output, Serializable value) throws IOException {
+        if (value == null) {
+            output.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            output.writeByte(TAG_STRING);
+            writeString(output, (String) value);
+        } else if (value instanceof Long) {
+            output.writeByte(TAG_LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(TAG_INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(TAG_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            output.writeByte(TAG_BYTES);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else {
+            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+            ObjectOutputStream objectStream = new ObjectOutputStream(byteStream);
+            objectStream.writeObject(value);
+            objectStream.close();
+            byte[] bytes = byteStream.toByteArray();
+            output.writeByte(TAG_SERIALIZABLE);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static Serializable readValue(DataInput input) throws IOException {
+        int tag = input.readUnsignedByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(input);
+            case TAG_LONG:
+                return input.readLong();
+            case TAG_INTEGER:
+                return input.readInt();
+            case TAG_BOOLEAN:
+                return input.readBoolean();
+            case TAG_BYTES:
+                return readBytes(input);
+            case TAG_SERIALIZABLE:
+                ObjectInputStream objectStream = new ObjectInputStream(new ByteArrayInputStream(readBytes(input)));
+                try {
+                    return (Serializable) objectStream.readObject();
+                } catch (ClassNotFoundException e) {
+                    IOException ioException = new IOException();
+                    ioException.initCause(e);
+                    throw ioException;
+                } finally {
+                    objectStream.close();
+                }
+            default:
+                throw new IOException("unknown meta data tag " + tag);
+        }
+    }
+
+    @Override
+    public void save(OutputSource outputSource, MetaData value) throws IOException {
+        OutputStream outputStream = outputSource.openOutputStream();
+        try {
+            // the stream is expected to be buffered
+            DataOutputStream output = new DataOutputStream(outputStream);
+            output.writeShort(MAGIC);
+            output.writeByte(VERSION);
+            if (value == null) {
+                output.writeInt(-1);
+            } else {
+                output.writeInt(value.size());
+                for (Map.Entry<String, Serializable> entry : value.entrySet()) {
+                    writeString(output, entry.getKey());
+                    writeValue(output, entry.getValue());
+                }
+            }
+            output.flush();
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    @Override
+    public MetaData load(InputSource inputSource) throws IOException {
+        InputStream inputStream = inputSource.openInputStream();
+        try {
+            DataInputStream input = new DataInputStream(inputStream);
+            int magic = input.readUnsignedShort();
+            if (magic == STREAM_MAGIC) {
+                // meta data of an old entry file
+                return new DefaultSerializer<MetaData>().load(inputSource);
+            }
+            if (magic != MAGIC) {
+                throw new IOException("unknown meta data format");
+            }
+            int version = input.readUnsignedByte();
+            if (version > VERSION) {
+                throw new IOException("unsupported version of meta data: " + version);
+            }
+
+            int size = input.readInt();
+            if (size < 0) {
+                return null;
+            }
+            MetaData metaData = new MetaData();
+            for (int i = 0; i < size; i++) {
+                String key = readString(input);
+                metaData.put(key, readValue(input));
+            }
+            return metaData;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+}
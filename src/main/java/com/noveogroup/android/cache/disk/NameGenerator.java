@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates unique names of files and creates the files.
+ * <p/>
+ * A name consists of a random id of the generator and a value of
+ * an atomic counter, so names generated by one generator never repeat
+ * and names generated by different generators (possibly in different
+ * processes) collide only if their ids are equal. A file is created
+ * with a single exclusive create call. Parent directories are created
+ * only if the creation failed because of their absence.
+ */
+class NameGenerator {
+
+    private static final int MAX_ATTEMPTS = 16;
+
+    private final Random random = new Random();
+    private final AtomicLong counter = new AtomicLong();
+    private volatile String id;
+
+    /**
+     * Creates new name generator with a random id.
+     */
+    public NameGenerator() {
+        this.id = generateId();
+    }
+
+    private String generateId() {
+        synchronized (random) {
+            return Long.toHexString(random.nextLong() ^ System.nanoTime()).toUpperCase();
+        }
+    }
+
+    /**
+     * Generates new unique name.
+     *
+     * @param prefix the prefix of the name.
+     * @param suffix the suffix of the name.
+     * @return the name.
+     */
+    public String nextName(String prefix, String suffix) {
+        String id = this.id;
+        String count = Long.toHexString(counter.incrementAndGet()).toUpperCase();
+        StringBuilder builder = new StringBuilder(prefix.length() + id.length() + count.length() + suffix.length() + 1);
+        return builder.append(prefix).append(id).append('-').append(count).append(suffix).toString();
+    }
+
+    private static boolean create(File file, boolean directory) throws IOException {
+        if (directory) {
+            return file.mkdir();
+        } else {
+            return file.createNewFile();
+        }
+    }
+
+    /**
+     * Creates new file or directory with unique name.
+     *
+     * @param directory true if a directory should be created, false otherwise.
+     * @param prefix    the prefix of the name of the file.
+     * @param suffix    the suffix of the name of the file.
+     * @param parent    the parent directory.
+     * @return the created file or directory.
+     * @throws IOException if I/O error occurred and a file could not be created.
+     */
+    public File createFile(boolean directory, String prefix, String suffix, File parent) throws IOException {
+        if (prefix == null) {
+            prefix = "";
+        }
+        if (suffix == null) {
+            suffix = "";
+        }
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            File file = new File(parent, nextName(prefix, suffix));
+
+            boolean created;
+            try {
+                created = create(file, directory);
+            } catch (IOException e) {
+                if (parent.isDirectory()) {
+                    throw e;
+                }
+                created = false;
+            }
+
+            if (created) {
+                return file;
+            }
+
+            if (!parent.isDirectory()) {
+                // the parent directory could be deleted by erasing or cleaning
+                parent.mkdirs();
+            } else if (file.exists()) {
+                // another generator with the same id uses the directory
+                id = generateId();
+            }
+        }
+        throw new IOException("cannot create file in " + parent);
+    }
+
+}
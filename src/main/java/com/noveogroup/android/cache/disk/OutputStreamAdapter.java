@@ -26,12 +26,15 @@
 
 package com.noveogroup.android.cache.disk;
 
+import com.noveogroup.android.cache.util.BufferPool;
+
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 
 /**
  * InputStreamAdapter can be used to represent RandomAccessFile as a OutputStream object.
+ * Small writes are collected in a buffer taken from {@link BufferPool}.
  */
 class OutputStreamAdapter extends OutputStream {
 
@@ -40,6 +43,9 @@ class OutputStreamAdapter extends OutputStream {
     private final RandomAccessFile randomAccessFile;
     private final long beginPosition;
     private long currentPosition;
+    private BufferPool pool;
+    private byte[] buffer;
+    private int bufferCount;
 
     /**
      * Creates new adapter.
@@ -78,11 +84,49 @@ class OutputStreamAdapter extends OutputStream {
     protected void onClose() throws IOException {
     }
 
+    private void flushBuffer() throws IOException {
+        if (bufferCount > 0) {
+            randomAccessFile.seek(currentPosition);
+            randomAccessFile.write(buffer, 0, bufferCount);
+            currentPosition += bufferCount;
+            bufferCount = 0;
+        }
+    }
+
+    private void acquireBuffer() {
+        if (buffer == null) {
+            pool = BufferPool.getInstance();
+            buffer = pool.acquire();
+        }
+    }
+
+    private void releaseBuffer() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+            pool = null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            if (!isClosed) {
+                flushBuffer();
+            }
+        }
+    }
+
     @Override
     public void close() throws IOException {
         synchronized (lock) {
             if (!isClosed) {
-                isClosed = true;
+                try {
+                    flushBuffer();
+                } finally {
+                    releaseBuffer();
+                    isClosed = true;
+                }
                 onClose();
             }
         }
@@ -91,19 +135,23 @@ class OutputStreamAdapter extends OutputStream {
     /**
      * Returns count of bytes already written.
      *
-     * @return length of the stream.
+     * @return the length of the stream.
      */
     public long length() {
-        return currentPosition - beginPosition;
+        synchronized (lock) {
+            return currentPosition + bufferCount - beginPosition;
+        }
     }
 
     @Override
     public void write(int b) throws IOException {
         synchronized (lock) {
             if (!isClosed) {
-                randomAccessFile.seek(currentPosition);
-                randomAccessFile.write(b);
-                currentPosition = randomAccessFile.getFilePointer();
+                acquireBuffer();
+                if (bufferCount == buffer.length) {
+                    flushBuffer();
+                }
+                buffer[bufferCount++] = (byte) b;
             }
         }
     }
@@ -117,9 +165,22 @@ class OutputStreamAdapter extends OutputStream {
     public void write(byte[] b, int off, int len) throws IOException {
         synchronized (lock) {
             if (!isClosed) {
-                randomAccessFile.seek(currentPosition);
-                randomAccessFile.write(b, off, len);
-                currentPosition = randomAccessFile.getFilePointer();
+                if (len < BufferPool.getInstance().getBufferSize()) {
+                    acquireBuffer();
+                }
+                if (buffer == null || len >= buffer.length) {
+                    // large writes go directly to the file
+                    flushBuffer();
+                    randomAccessFile.seek(currentPosition);
+                    randomAccessFile.write(b, off, len);
+                    currentPosition = randomAccessFile.getFilePointer();
+                } else {
+                    if (len > buffer.length - bufferCount) {
+                        flushBuffer();
+                    }
+                    System.arraycopy(b, off, buffer, bufferCount, len);
+                    bufferCount += len;
+                }
             }
         }
     }
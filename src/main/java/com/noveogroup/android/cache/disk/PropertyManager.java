@@ -26,37 +26,262 @@
 
 package com.noveogroup.android.cache.disk;
 
+import android.util.Log;
+import com.noveogroup.android.cache.io.FileSource;
+import com.noveogroup.android.cache.util.Clock;
+
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class stores disk cache settings.
+ * <p/>
+ * Settings can be backed by a file shared by all instances of the cache
+ * using the same directory. The file is rewritten on each change under
+ * a lock file and checked for changes at most once per {@link #RELOAD_INTERVAL},
+ * so a change made by one instance is seen by others shortly after it.
+ * The file is reread by one of the callers only if its modification time
+ * or length has changed, other callers use current settings meanwhile.
+ * <p/>
+ * Getters read an immutable snapshot of settings replaced on each change
+ * without locking, so they are cheap enough for every operation.
  */
 class PropertyManager {
 
+    /**
+     * Minimum time between rereads of the settings file in milliseconds.
+     */
+    public static final long RELOAD_INTERVAL = 1000;
+
+    // modification times of some file systems are rounded to two seconds
+    private static final long TIMESTAMP_GRANULARITY = 2000;
+
     private static final String KEY_CLEAN_TIME_DELAY = "clean-time-delay";
     private static final String KEY_CLEAN_MODIFICATION_COUNT = "clean-modification-count";
     private static final String KEY_MAX_AGE = "max-age";
     private static final String KEY_MAX_SIZE = "max-size";
     private static final String KEY_EXPIRATION_TIME = "expiration-time";
+    private static final String KEY_REFRESH_AHEAD_TIME = "refresh-ahead-time";
+    private static final String KEY_REFRESH_AFTER_TIME = "refresh-after-time";
+    private static final String KEY_FAN_OUT_LEVELS = "fan-out-levels";
+    private static final String KEY_SCAN_PARALLELISM = "scan-parallelism";
+    private static final String KEY_DURABILITY = "durability";
+    private static final String KEY_GROUP_COMMIT_WINDOW = "group-commit-window";
+    private static final String KEY_INDEXED_FIELDS = "indexed-fields";
+    private static final String KEY_KEY_INDEX_ENABLED = "key-index-enabled";
+    private static final String KEY_CLEAN_JITTER = "clean-jitter";
+    private static final String KEY_LAST_CLEAN_TIME = "last-clean-time";
+    private static final String KEY_LAST_CLEANER = "last-cleaner";
+
+    /**
+     * Immutable copy of settings.
+     */
+    private static class Snapshot {
+
+        private final Map<String, Serializable> values;
+        private final Set<String> indexedFields;
+
+        public Snapshot(MetaData properties) {
+            this.values = new HashMap<String, Serializable>(properties);
+            HashSet<String> indexedFields = properties.getValue(KEY_INDEXED_FIELDS);
+            this.indexedFields = indexedFields == null ? null
+                    : Collections.unmodifiableSet(new HashSet<String>(indexedFields));
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T extends Serializable> T getValue(String key, T defaultValue) {
+            T value = (T) values.get(key);
+            return value != null ? value : defaultValue;
+        }
+
+        public long getLong(String key, long defaultValue) {
+            Long value = (Long) values.get(key);
+            return value != null ? value : defaultValue;
+        }
+
+        public int getInt(String key, int defaultValue) {
+            Integer value = (Integer) values.get(key);
+            return value != null ? value : defaultValue;
+        }
+
+        public boolean getBoolean(String key, boolean defaultValue) {
+            Boolean value = (Boolean) values.get(key);
+            return value != null ? value : defaultValue;
+        }
+
+    }
 
     private final Object lock = new Object();
     private final MetaData properties = new MetaData();
+    private volatile Snapshot snapshot = new Snapshot(properties);
+    private final MetaDataCodec codec = new MetaDataCodec();
+
+    private final File file;
+    private final LockFile lockFile;
+    private final Clock clock;
+    private final AtomicLong reloadTime = new AtomicLong();
+
+    // guarded by the lock
+    private long loadedModificationTime = -1;
+    private long loadedLength = -1;
+    private long changeCount = 0;
 
     /**
-     * Creates new instance of property manager.
+     * Creates new instance of property manager keeping settings in memory.
      */
     public PropertyManager() {
+        this(null, null, null);
+    }
+
+    /**
+     * Creates new instance of property manager backed by the file.
+     *
+     * @param file     the settings file.
+     * @param lockFile the lock guarding changes of the file.
+     * @param clock    the clock to schedule rereads.
+     */
+    public PropertyManager(File file, LockFile lockFile, Clock clock) {
+        this.file = file;
+        this.lockFile = lockFile;
+        this.clock = clock;
+        if (file != null) {
+            reload();
+        }
+    }
+
+    private MetaData read() {
+        if (!file.exists()) {
+            // keep current settings, the file could be erased
+            return null;
+        }
+        try {
+            return codec.load(new FileSource(file));
+        } catch (IOException e) {
+            Log.v(DiskCache.TAG, "cannot load settings file: " + file, e);
+            return null;
+        }
+    }
+
+    // should be called holding the lock
+    private void apply(MetaData loaded, long modificationTime, long length) {
+        loadedModificationTime = modificationTime;
+        loadedLength = length;
+        if (loaded != null) {
+            properties.clear();
+            properties.putAll(loaded);
+            snapshot = new Snapshot(properties);
+        }
+    }
+
+    // should be called holding the lock
+    private void load() {
+        long modificationTime = file.lastModified();
+        long length = file.length();
+        apply(read(), modificationTime, length);
+    }
+
+    // should be called holding the lock
+    private void save() throws IOException {
+        File tempFile = new File(file.getPath() + "-temp");
+        try {
+            codec.save(new FileSource(tempFile), properties);
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("cannot move temp file " + tempFile + " to " + file);
+            }
+        } finally {
+            Utils.delete(tempFile);
+        }
+    }
+
+    /**
+     * Rereads settings from the file if it is used.
+     */
+    public void reload() {
+        if (file != null) {
+            reloadTime.set(clock.uptimeMillis());
+            reload(file.lastModified(), file.length());
+        }
     }
 
-    private <T extends Serializable> T getValue(String key, T defaultValue) {
+    private void reload(long modificationTime, long length) {
+        long loadChangeCount;
+        synchronized (lock) {
+            loadChangeCount = changeCount;
+        }
+        MetaData loaded = read();
         synchronized (lock) {
-            return properties.getValue(key, defaultValue);
+            // a change made meanwhile has merged newer settings
+            if (changeCount == loadChangeCount) {
+                apply(loaded, modificationTime, length);
+            }
+        }
+    }
+
+    private void reloadIfChanged() {
+        long time = clock.uptimeMillis();
+        long lastReloadTime = reloadTime.get();
+        if (time - lastReloadTime < RELOAD_INTERVAL || !reloadTime.compareAndSet(lastReloadTime, time)) {
+            return;
+        }
+
+        long modificationTime = file.lastModified();
+        long length = file.length();
+        synchronized (lock) {
+            // the file could be rewritten within the same tick of a coarse timestamp
+            if (modificationTime == loadedModificationTime && length == loadedLength
+                    && Math.abs(System.currentTimeMillis() - modificationTime) >= TIMESTAMP_GRANULARITY) {
+                return;
+            }
+        }
+        reload(modificationTime, length);
+    }
+
+    private Snapshot getSnapshot() {
+        if (file != null) {
+            reloadIfChanged();
         }
+        return snapshot;
     }
 
     private <T extends Serializable> void putValue(String key, T value) {
+        putValues(new MetaData().putValue(key, value));
+    }
+
+    private void putValues(MetaData values) {
         synchronized (lock) {
-            properties.putValue(key, value);
+            changeCount++;
+            if (file == null) {
+                properties.putAll(values);
+                snapshot = new Snapshot(properties);
+                return;
+            }
+
+            try {
+                lockFile.lock();
+                try {
+                    // merge with changes of other instances
+                    load();
+                    properties.putAll(values);
+                    snapshot = new Snapshot(properties);
+                    save();
+                    loadedModificationTime = file.lastModified();
+                    loadedLength = file.length();
+                    reloadTime.set(clock.uptimeMillis());
+                } finally {
+                    lockFile.unlock();
+                }
+            } catch (IOException e) {
+                Log.w(DiskCache.TAG, "cannot save settings file: " + file, e);
+                properties.putAll(values);
+                snapshot = new Snapshot(properties);
+            }
         }
     }
 
@@ -67,7 +292,7 @@ class PropertyManager {
      * @return clean time delay value.
      */
     public long getCleanTimeDelay(long defaultValue) {
-        return getValue(KEY_CLEAN_TIME_DELAY, defaultValue);
+        return getSnapshot().getLong(KEY_CLEAN_TIME_DELAY, defaultValue);
     }
 
     /**
@@ -86,7 +311,7 @@ class PropertyManager {
      * @return clean modification count value.
      */
     public long getCleanModificationCount(long defaultValue) {
-        return getValue(KEY_CLEAN_MODIFICATION_COUNT, defaultValue);
+        return getSnapshot().getLong(KEY_CLEAN_MODIFICATION_COUNT, defaultValue);
     }
 
     /**
@@ -105,7 +330,7 @@ class PropertyManager {
      * @return max age value.
      */
     public long getMaxAge(long defaultValue) {
-        return getValue(KEY_MAX_AGE, defaultValue);
+        return getSnapshot().getLong(KEY_MAX_AGE, defaultValue);
     }
 
     /**
@@ -124,7 +349,7 @@ class PropertyManager {
      * @return max size value.
      */
     public long getMaxSize(long defaultValue) {
-        return getValue(KEY_MAX_SIZE, defaultValue);
+        return getSnapshot().getLong(KEY_MAX_SIZE, defaultValue);
     }
 
     /**
@@ -143,7 +368,7 @@ class PropertyManager {
      * @return expiration time value.
      */
     public long getExpirationTime(long defaultValue) {
-        return getValue(KEY_EXPIRATION_TIME, defaultValue);
+        return getSnapshot().getLong(KEY_EXPIRATION_TIME, defaultValue);
     }
 
     /**
@@ -155,4 +380,208 @@ class PropertyManager {
         putValue(KEY_EXPIRATION_TIME, expirationTime);
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns refresh-ahead time.
+     *
+     * @param defaultValue a default value.
+     * @return refresh-ahead time value.
+     */
+    public long getRefreshAheadTime(long defaultValue) {
+        return getSnapshot().getLong(KEY_REFRESH_AHEAD_TIME, defaultValue);
+    }
+
+    /**
+     * Sets refresh-ahead time.
+     *
+     * @param refreshAheadTime new value of refresh-ahead time.
+     */
+    public void setRefreshAheadTime(long refreshAheadTime) {
+        putValue(KEY_REFRESH_AHEAD_TIME, refreshAheadTime);
+    }
+
+    /**
+     * Returns refresh-after time.
+     *
+     * @param defaultValue a default value.
+     * @return refresh-after time.
+     */
+    public long getRefreshAfterTime(long defaultValue) {
+        return getSnapshot().getLong(KEY_REFRESH_AFTER_TIME, defaultValue);
+    }
+
+    /**
+     * Sets refresh-after time.
+     *
+     * @param refreshAfterTime new value of refresh-after time.
+     */
+    public void setRefreshAfterTime(long refreshAfterTime) {
+        putValue(KEY_REFRESH_AFTER_TIME, refreshAfterTime);
+    }
+
+    /**
+     * Returns count of levels of entry directories.
+     *
+     * @param defaultValue a default value.
+     * @return count of levels.
+     */
+    public int getFanOutLevels(int defaultValue) {
+        return getSnapshot().getInt(KEY_FAN_OUT_LEVELS, defaultValue);
+    }
+
+    /**
+     * Sets count of levels of entry directories.
+     *
+     * @param fanOutLevels new count of levels.
+     */
+    public void setFanOutLevels(int fanOutLevels) {
+        putValue(KEY_FAN_OUT_LEVELS, fanOutLevels);
+    }
+
+    /**
+     * Returns parallelism of directory scans.
+     *
+     * @param defaultValue a default value.
+     * @return parallelism of scans.
+     */
+    public int getScanParallelism(int defaultValue) {
+        return getSnapshot().getInt(KEY_SCAN_PARALLELISM, defaultValue);
+    }
+
+    /**
+     * Sets parallelism of directory scans.
+     *
+     * @param scanParallelism new parallelism of scans.
+     */
+    public void setScanParallelism(int scanParallelism) {
+        putValue(KEY_SCAN_PARALLELISM, scanParallelism);
+    }
+
+    /**
+     * Returns durability of commits.
+     *
+     * @param defaultValue a default value.
+     * @return durability of commits.
+     */
+    public DiskCacheCore.Durability getDurability(DiskCacheCore.Durability defaultValue) {
+        return getSnapshot().getValue(KEY_DURABILITY, defaultValue);
+    }
+
+    /**
+     * Sets durability of commits.
+     *
+     * @param durability new durability of commits.
+     */
+    public void setDurability(DiskCacheCore.Durability durability) {
+        putValue(KEY_DURABILITY, durability);
+    }
+
+    /**
+     * Returns group commit window.
+     *
+     * @param defaultValue a default value.
+     * @return group commit window.
+     */
+    public long getGroupCommitWindow(long defaultValue) {
+        return getSnapshot().getLong(KEY_GROUP_COMMIT_WINDOW, defaultValue);
+    }
+
+    /**
+     * Sets group commit window.
+     *
+     * @param groupCommitWindow new value of group commit window.
+     */
+    public void setGroupCommitWindow(long groupCommitWindow) {
+        putValue(KEY_GROUP_COMMIT_WINDOW, groupCommitWindow);
+    }
+
+    /**
+     * Returns indexed meta data fields.
+     *
+     * @param defaultValue a default value.
+     * @return the unmodifiable set of indexed meta data fields.
+     */
+    public Set<String> getIndexedFields(Set<String> defaultValue) {
+        Set<String> indexedFields = getSnapshot().indexedFields;
+        return indexedFields != null ? indexedFields : defaultValue;
+    }
+
+    /**
+     * Sets indexed meta data fields.
+     *
+     * @param indexedFields new indexed meta data fields.
+     */
+    public void setIndexedFields(HashSet<String> indexedFields) {
+        putValue(KEY_INDEXED_FIELDS, indexedFields);
+    }
+
+    /**
+     * Returns true if the key index is used by lookups.
+     *
+     * @param defaultValue a default value.
+     * @return the key index status.
+     */
+    public boolean isKeyIndexEnabled(boolean defaultValue) {
+        return getSnapshot().getBoolean(KEY_KEY_INDEX_ENABLED, defaultValue);
+    }
+
+    /**
+     * Turns on or off using of the key index by lookups.
+     *
+     * @param keyIndexEnabled new key index status.
+     */
+    public void setKeyIndexEnabled(boolean keyIndexEnabled) {
+        putValue(KEY_KEY_INDEX_ENABLED, keyIndexEnabled);
+    }
+
+    /**
+     * Returns clean jitter.
+     *
+     * @param defaultValue a default value.
+     * @return clean jitter.
+     */
+    public long getCleanJitter(long defaultValue) {
+        return getSnapshot().getLong(KEY_CLEAN_JITTER, defaultValue);
+    }
+
+    /**
+     * Sets clean jitter.
+     *
+     * @param cleanJitter new value of clean jitter.
+     */
+    public void setCleanJitter(long cleanJitter) {
+        putValue(KEY_CLEAN_JITTER, cleanJitter);
+    }
+
+    /**
+     * Returns the time of the last finished cleaning.
+     *
+     * @param defaultValue a default value.
+     * @return the time of the last cleaning.
+     */
+    public long getLastCleanTime(long defaultValue) {
+        return getSnapshot().getLong(KEY_LAST_CLEAN_TIME, defaultValue);
+    }
+
+    /**
+     * Returns an identifier of the instance finished the last cleaning.
+     *
+     * @param defaultValue a default value.
+     * @return the identifier of the last cleaner.
+     */
+    public String getLastCleaner(String defaultValue) {
+        return getSnapshot().getValue(KEY_LAST_CLEANER, defaultValue);
+    }
+
+    /**
+     * Sets the time and the instance of the last finished cleaning.
+     *
+     * @param lastCleanTime the time of the cleaning.
+     * @param lastCleaner   the identifier of the instance.
+     */
+    public void setLastClean(long lastCleanTime, String lastCleaner) {
+        putValues(new MetaData()
+                .putValue(KEY_LAST_CLEAN_TIME, lastCleanTime)
+                .putValue(KEY_LAST_CLEANER, lastCleaner));
+    }
+
+}
@@ -27,6 +27,7 @@
 package com.noveogroup.android.cache.disk;
 
 import android.util.Log;
+import com.noveogroup.android.cache.util.BufferPool;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -94,43 +95,6 @@ final class Utils {
         }
     }
 
-    /**
-     * Creates new temporary file or directory in the specified directory. A name of the file will
-     * start with the specified prefix and end with the specified suffix.
-     *
-     * @param directory the directory.
-     * @param prefix    the prefix of the name of the file.
-     * @param suffix    the suffix of the name of the file.
-     * @param parent    the parent directory.
-     * @return the temporary file.
-     * @throws IOException if I/O error occurred and a file could not be created.
-     */
-    public static File createTempFile(boolean directory, String prefix, String suffix, File parent) throws IOException {
-        // create parent directory
-        parent.mkdirs();
-
-        // fix the prefix
-        if (prefix == null) {
-            prefix = "";
-        }
-        // to prevent possible duplications add timestamp to prefix
-        prefix = String.format("%08X-%s", System.currentTimeMillis(), prefix);
-        File file = File.createTempFile(prefix, suffix, parent);
-        if (!directory) {
-            return file;
-        } else {
-            // delete created temp file and make a directory instead
-            file.delete();
-            file.mkdirs();
-            // check that the directory is created
-            if (!file.isDirectory()) {
-                // throw an exception just like File.createTempFile
-                throw new IOException("temp directory hasn't been created: " + file);
-            }
-            return file;
-        }
-    }
-
     /**
      * Deletes a file or a directory. Similar to {@link #deleteRecursively(java.io.File)}.
      *
@@ -196,6 +160,21 @@ final class Utils {
         return success;
     }
 
+    /**
+     * Forces content of a file to be written to the storage.
+     *
+     * @param file the file.
+     * @throws IOException if I/O error occurred.
+     */
+    public static void sync(File file) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(file, true);
+        try {
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+    }
+
     /**
      * Copies bytes from input stream to output stream.
      *
@@ -204,19 +183,44 @@ final class Utils {
      * @throws IOException if I/O error occurred.
      */
     public static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
-        byte[] buffer = new byte[1024];
-        for (int length; (length = inputStream.read(buffer)) >= 0; outputStream.write(buffer, 0, length)) ;
+        BufferPool pool = BufferPool.getInstance();
+        byte[] buffer = pool.acquire();
+        try {
+            for (int length; (length = inputStream.read(buffer)) >= 0; outputStream.write(buffer, 0, length)) ;
+        } finally {
+            pool.release(buffer);
+        }
     }
 
     /**
-     * Reads bytes from input stream.
+     * Reads bytes from input stream. If the stream reports
+     * its exact size by {@link InputStream#available()} the bytes
+     * are read into an array of that size without copying.
      *
      * @param inputStream the input stream.
      * @return the content of the stream.
      * @throws IOException if I/O error occurred.
      */
     public static byte[] readFully(InputStream inputStream) throws IOException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        // try to read the content into an array of the expected size
+        int size = inputStream.available();
+        byte[] bytes = new byte[size];
+        int count = 0;
+        for (int length; count < size && (length = inputStream.read(bytes, count, size - count)) >= 0; count += length) ;
+        if (count < size) {
+            byte[] result = new byte[count];
+            System.arraycopy(bytes, 0, result, 0, count);
+            return result;
+        }
+        int next = inputStream.read();
+        if (next < 0) {
+            return bytes;
+        }
+
+        // the stream contains more bytes than expected
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(Math.max(32, 2 * size + 1));
+        byteArrayOutputStream.write(bytes, 0, count);
+        byteArrayOutputStream.write(next);
         copy(inputStream, byteArrayOutputStream);
         return byteArrayOutputStream.toByteArray();
     }
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import android.util.Log;
+import com.noveogroup.android.cache.io.KeyManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * WriteBehindQueue is a bounded buffer of pending writes drained by
+ * a background thread in batches.
+ * <p/>
+ * Writes of the same key are coalesced: a new item replaces a pending one,
+ * so only the last item is written. Only one write per key is running
+ * at a time, either in the background thread or in a thread that has
+ * claimed the key.
+ *
+ * @param <K> a type of keys.
+ * @param <W> a type of pending writes.
+ */
+abstract class WriteBehindQueue<K, W> {
+
+    private static final int BATCH_SIZE = 32;
+
+    private static class KeyHolder<K> {
+
+        private final KeyManager<K> keyManager;
+        private final K key;
+
+        public KeyHolder(KeyManager<K> keyManager, K key) {
+            this.keyManager = keyManager;
+            this.key = key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            KeyHolder<K> keyHolder = (KeyHolder<K>) o;
+            return keyManager.equals(key, keyHolder.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return keyManager.hashCode(key);
+        }
+
+    }
+
+    private final Object lock = new Object();
+    private final Map<KeyHolder<K>, W> pendingWrites = new LinkedHashMap<KeyHolder<K>, W>();
+    private final Set<KeyHolder<K>> writingKeys = new HashSet<KeyHolder<K>>();
+
+    private final KeyManager<K> keyManager;
+    private final ThreadFactory threadFactory;
+    private Thread thread = null;
+    private volatile boolean used = false;
+
+    /**
+     * Creates new write-behind queue.
+     *
+     * @param keyManager    a key manager.
+     * @param threadFactory a factory of the background thread.
+     */
+    public WriteBehindQueue(KeyManager<K> keyManager, ThreadFactory threadFactory) {
+        this.keyManager = keyManager;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Writes an item.
+     *
+     * @param key  the key.
+     * @param item the item.
+     */
+    protected abstract void write(K key, W item);
+
+    /**
+     * Merges a pending item with a new one replacing it.
+     *
+     * @param previous the pending item.
+     * @param next     the new item.
+     * @return the merged item.
+     */
+    protected W merge(W previous, W next) {
+        return next;
+    }
+
+    /**
+     * Checks if any item has been offered to the queue.
+     *
+     * @return true if the queue has been used.
+     */
+    public boolean isUsed() {
+        return used;
+    }
+
+    /**
+     * Returns count of pending items.
+     *
+     * @return the count.
+     */
+    public int size() {
+        synchronized (lock) {
+            return pendingWrites.size();
+        }
+    }
+
+    /**
+     * Adds an item to the queue or replaces a pending item of the same key.
+     * If the queue is full the method waits for free space.
+     *
+     * @param key      the key.
+     * @param item     the item.
+     * @param capacity max count of pending items.
+     * @return false if the thread has been interrupted and the item
+     *         hasn't been added to the queue.
+     */
+    public boolean offer(K key, W item, int capacity) {
+        KeyHolder<K> keyHolder = new KeyHolder<K>(keyManager, key);
+        synchronized (lock) {
+            used = true;
+            if (thread == null) {
+                thread = threadFactory.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        loop();
+                    }
+                });
+                thread.start();
+            }
+
+            try {
+                while (pendingWrites.size() >= capacity && !pendingWrites.containsKey(keyHolder)) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            W previous = pendingWrites.get(keyHolder);
+            pendingWrites.put(keyHolder, previous == null ? item : merge(previous, item));
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Returns a pending item of the key.
+     *
+     * @param key the key.
+     * @return the item or null if there is no pending item.
+     */
+    public W peek(K key) {
+        if (!used) {
+            return null;
+        }
+
+        synchronized (lock) {
+            return pendingWrites.get(new KeyHolder<K>(keyManager, key));
+        }
+    }
+
+    /**
+     * Waits until a write of the key is finished and prevents new writes
+     * of the key until {@link #release(Object, Object)} is called.
+     *
+     * @param key the key.
+     * @return a pending item of the key or null if there is no pending item.
+     */
+    public W claim(K key) {
+        KeyHolder<K> keyHolder = new KeyHolder<K>(keyManager, key);
+        synchronized (lock) {
+            boolean interrupted = false;
+            while (writingKeys.contains(keyHolder)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            writingKeys.add(keyHolder);
+            return pendingWrites.get(keyHolder);
+        }
+    }
+
+    /**
+     * Releases the claimed key. The item is removed from the queue
+     * unless it has been replaced by another one.
+     *
+     * @param key  the key.
+     * @param item the item returned by {@link #claim(Object)}.
+     */
+    public void release(K key, W item) {
+        KeyHolder<K> keyHolder = new KeyHolder<K>(keyManager, key);
+        synchronized (lock) {
+            writingKeys.remove(keyHolder);
+            if (item != null && pendingWrites.get(keyHolder) == item) {
+                pendingWrites.remove(keyHolder);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until all items added before the call are written.
+     */
+    public void flush() {
+        if (!used) {
+            return;
+        }
+
+        synchronized (lock) {
+            boolean interrupted = false;
+            List<W> items = new ArrayList<W>(pendingWrites.values());
+            while (!items.isEmpty()) {
+                // wait until the items are written or replaced
+                if (!pendingWrites.containsValue(items.get(items.size() - 1))) {
+                    items.remove(items.size() - 1);
+                    continue;
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Removes all pending items and waits until running writes are finished.
+     */
+    public void clear() {
+        if (!used) {
+            return;
+        }
+
+        synchronized (lock) {
+            pendingWrites.keySet().retainAll(writingKeys);
+            boolean interrupted = false;
+            while (!writingKeys.isEmpty()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            pendingWrites.clear();
+            lock.notifyAll();
+        }
+    }
+
+    private void loop() {
+        List<KeyHolder<K>> keys = new ArrayList<KeyHolder<K>>(BATCH_SIZE);
+        List<W> items = new ArrayList<W>(BATCH_SIZE);
+        while (true) {
+            // take a batch of items of unclaimed keys
+            synchronized (lock) {
+                try {
+                    while (true) {
+                        for (Iterator<Map.Entry<KeyHolder<K>, W>> iterator = pendingWrites.entrySet().iterator();
+                             iterator.hasNext() && keys.size() < BATCH_SIZE; ) {
+                            Map.Entry<KeyHolder<K>, W> entry = iterator.next();
+                            if (!writingKeys.contains(entry.getKey())) {
+                                keys.add(entry.getKey());
+                                items.add(entry.getValue());
+                            }
+                        }
+                        if (!keys.isEmpty()) {
+                            break;
+                        }
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Log.w(DiskCache.TAG, "write-behind queue is interrupted", e);
+                    continue;
+                }
+                writingKeys.addAll(keys);
+            }
+
+            // write the batch
+            for (int i = 0; i < keys.size(); i++) {
+                try {
+                    write(keys.get(i).key, items.get(i));
+                } catch (RuntimeException e) {
+                    Log.w(DiskCache.TAG, "cannot write a pending value", e);
+                }
+            }
+
+            synchronized (lock) {
+                for (int i = 0; i < keys.size(); i++) {
+                    KeyHolder<K> keyHolder = keys.get(i);
+                    writingKeys.remove(keyHolder);
+                    if (pendingWrites.get(keyHolder) == items.get(i)) {
+                        pendingWrites.remove(keyHolder);
+                    }
+                }
+                lock.notifyAll();
+            }
+            keys.clear();
+            items.clear();
+        }
+    }
+
+}
@@ -26,6 +26,8 @@
 
 package com.noveogroup.android.cache.io;
 
+import com.noveogroup.android.cache.util.BufferPool;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
@@ -36,8 +38,6 @@ import java.io.ObjectOutput;
  */
 public class ByteArraySerializer extends AbstractSerializer<byte[]> {
 
-    private static final int DEFAULT_BUFFER_SIZE = 1024;
-
     @Override
     protected void save(ObjectOutput objectOutput, byte[] value) throws IOException {
         objectOutput.write(value, 0, value.length);
@@ -47,9 +47,14 @@ public class ByteArraySerializer extends AbstractSerializer<byte[]> {
     protected byte[] load(ObjectInput objectInput) throws IOException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 
-        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-        for (int length = 0; length != -1; length = objectInput.read(buffer)) {
-            outputStream.write(buffer, 0, length);
+        BufferPool pool = BufferPool.getInstance();
+        byte[] buffer = pool.acquire();
+        try {
+            for (int length = 0; length != -1; length = objectInput.read(buffer)) {
+                outputStream.write(buffer, 0, length);
+            }
+        } finally {
+            pool.release(buffer);
         }
 
         return outputStream.toByteArray();
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This implementation of serializer saves remaining content of
+ * byte buffers as is, without any header or framing.
+ * <p/>
+ * Files are written and read through {@link java.nio.channels.FileChannel}.
+ * Loaded buffers are allocated using the length of the file and
+ * may be direct if it was requested in constructor.
+ * <p/>
+ * Position of saved buffers is not changed. Null and empty buffers
+ * are indistinguishable: both are loaded as an empty buffer.
+ *
+ * @see RawByteArraySerializer
+ */
+public class ByteBufferSerializer implements Serializer<ByteBuffer> {
+
+    private final boolean direct;
+
+    /**
+     * Creates new serializer that loads heap buffers.
+     */
+    public ByteBufferSerializer() {
+        this(false);
+    }
+
+    /**
+     * Creates new serializer.
+     *
+     * @param direct true if loaded buffers should be direct.
+     */
+    public ByteBufferSerializer(boolean direct) {
+        this.direct = direct;
+    }
+
+    /**
+     * Returns true if loaded buffers are direct.
+     *
+     * @return the direct flag.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    @Override
+    public void save(OutputSource outputSource, ByteBuffer value) throws IOException {
+        Channels.save(outputSource, value == null ? ByteBuffer.allocate(0) : value);
+    }
+
+    @Override
+    public ByteBuffer load(InputSource inputSource) throws IOException {
+        return Channels.load(inputSource, direct);
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.io;
+
+import com.noveogroup.android.cache.util.BufferPool;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Helpers to read and write files through channels.
+ */
+final class Channels {
+
+    private Channels() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the file of the source or null if the source isn't a plain file source.
+     * Subclasses of {@link FileSource} may override opening of streams, so they are
+     * not considered as plain.
+     */
+    private static File getFile(InputSource source) {
+        if (source != null && source.getClass() == FileSource.class) {
+            return ((FileSource) source).getFile();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Fills the buffer by positional reads of the channel starting at zero position.
+     */
+    public static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            position += count;
+        }
+    }
+
+    /**
+     * Loads the whole content of the source into a buffer.
+     * The content of files is read into a presized buffer,
+     * other sources are read using streams.
+     */
+    public static ByteBuffer load(InputSource inputSource, boolean direct) throws IOException {
+        File file = getFile(inputSource);
+        if (file != null) {
+            FileInputStream inputStream = new FileInputStream(file);
+            try {
+                FileChannel channel = inputStream.getChannel();
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("data is too large: " + size);
+                }
+                ByteBuffer buffer = direct ? ByteBuffer.allocateDirect((int) size) : ByteBuffer.allocate((int) size);
+                readFully(channel, buffer);
+                buffer.flip();
+                return buffer;
+            } finally {
+                inputStream.close();
+            }
+        } else {
+            InputStream inputStream = inputSource.openInputStream();
+            try {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                BufferPool pool = BufferPool.getInstance();
+                byte[] bytes = pool.acquire();
+                try {
+                    for (int length = inputStream.read(bytes); length != -1; length = inputStream.read(bytes)) {
+                        outputStream.write(bytes, 0, length);
+                    }
+                } finally {
+                    pool.release(bytes);
+                }
+                bytes = outputStream.toByteArray();
+                if (direct) {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+                    buffer.put(bytes);
+                    buffer.flip();
+                    return buffer;
+                } else {
+                    return ByteBuffer.wrap(bytes);
+                }
+            } finally {
+                inputStream.close();
+            }
+        }
+    }
+
+    /**
+     * Saves remaining content of the buffer to the source.
+     * Position of the buffer is not changed.
+     */
+    public static void save(OutputSource outputSource, ByteBuffer buffer) throws IOException {
+        OutputStream outputStream = outputSource.openOutputStream();
+        try {
+            if (outputStream instanceof FileOutputStream) {
+                FileChannel channel = ((FileOutputStream) outputStream).getChannel();
+                ByteBuffer source = buffer.duplicate();
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+            } else if (buffer.hasArray()) {
+                outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                ByteBuffer source = buffer.duplicate();
+                BufferPool pool = BufferPool.getInstance();
+                byte[] bytes = pool.acquire();
+                try {
+                    while (source.hasRemaining()) {
+                        int length = Math.min(bytes.length, source.remaining());
+                        source.get(bytes, 0, length);
+                        outputStream.write(bytes, 0, length);
+                    }
+                } finally {
+                    pool.release(bytes);
+                }
+            }
+        } finally {
+            outputStream.close();
+        }
+    }
+
+}
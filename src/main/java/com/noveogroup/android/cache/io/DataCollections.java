@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Helpers of compact collection serializers.
+ */
+final class DataCollections {
+
+    /**
+     * Version of collection format that stores versions of element formats.
+     */
+    public static final int VERSION = 2;
+
+    private DataCollections() {
+        throw new UnsupportedOperationException();
+    }
+
+    public static <T> void saveElement(DataOutput dataOutput, DataSerializer<T> serializer, T element) throws IOException {
+        dataOutput.writeBoolean(element != null);
+        if (element != null) {
+            serializer.save(dataOutput, element);
+        }
+    }
+
+    public static void saveVersion(DataOutput dataOutput, DataSerializer<?> serializer) throws IOException {
+        dataOutput.writeByte(serializer.getVersion());
+    }
+
+    public static int loadVersion(DataInput dataInput, int version, DataSerializer<?> serializer) throws IOException {
+        if (version < VERSION) {
+            // older collections were saved without versions of elements
+            return serializer.getVersion();
+        }
+
+        int elementVersion = dataInput.readUnsignedByte();
+        if (elementVersion > serializer.getVersion()) {
+            throw new IOException("unsupported element format version " + elementVersion);
+        }
+        return elementVersion;
+    }
+
+    public static <T> T loadElement(DataInput dataInput, DataSerializer<T> serializer, int version) throws IOException {
+        if (dataInput.readBoolean()) {
+            return serializer.load(dataInput, version);
+        } else {
+            return null;
+        }
+    }
+
+    public static int readSize(DataInput dataInput) throws IOException {
+        int size = dataInput.readInt();
+        if (size < 0) {
+            throw new IOException("illegal collection size " + size);
+        }
+        return size;
+    }
+
+}
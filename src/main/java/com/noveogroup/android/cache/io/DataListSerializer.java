@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact serializer of lists.
+ * Saves the version of the element format and the size of the list
+ * followed by its elements, each element is prefixed with a null flag.
+ *
+ * @param <T> the type of elements.
+ */
+public class DataListSerializer<T> extends DataSerializer<List<T>> {
+
+    private final DataSerializer<T> elementSerializer;
+
+    /**
+     * Creates new list serializer.
+     *
+     * @param elementSerializer a serializer of elements.
+     */
+    public DataListSerializer(DataSerializer<T> elementSerializer) {
+        if (elementSerializer == null) {
+            throw new NullPointerException();
+        }
+
+        this.elementSerializer = elementSerializer;
+    }
+
+    @Override
+    protected int getVersion() {
+        return DataCollections.VERSION;
+    }
+
+    @Override
+    protected void save(DataOutput dataOutput, List<T> value) throws IOException {
+        DataCollections.saveVersion(dataOutput, elementSerializer);
+        dataOutput.writeInt(value.size());
+        for (T element : value) {
+            DataCollections.saveElement(dataOutput, elementSerializer, element);
+        }
+    }
+
+    @Override
+    protected List<T> load(DataInput dataInput, int version) throws IOException {
+        int elementVersion = DataCollections.loadVersion(dataInput, version, elementSerializer);
+        int size = DataCollections.readSize(dataInput);
+        List<T> list = new ArrayList<T>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(DataCollections.loadElement(dataInput, elementSerializer, elementVersion));
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compact serializer of maps.
+ * Saves versions of the key and value formats and the size of the map
+ * followed by its keys and values, each key and value is prefixed
+ * with a null flag.
+ * Loaded maps keep the order of entries.
+ *
+ * @param <K> the type of keys.
+ * @param <V> the type of values.
+ */
+public class DataMapSerializer<K, V> extends DataSerializer<Map<K, V>> {
+
+    private final DataSerializer<K> keySerializer;
+    private final DataSerializer<V> valueSerializer;
+
+    /**
+     * Creates new map serializer.
+     *
+     * @param keySerializer   a serializer of keys.
+     * @param valueSerializer a serializer of values.
+     */
+    public DataMapSerializer(DataSerializer<K> keySerializer, DataSerializer<V> valueSerializer) {
+        if (keySerializer == null || valueSerializer == null) {
+            throw new NullPointerException();
+        }
+
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+    }
+
+    @Override
+    protected int getVersion() {
+        return DataCollections.VERSION;
+    }
+
+    @Override
+    protected void save(DataOutput dataOutput, Map<K, V> value) throws IOException {
+        DataCollections.saveVersion(dataOutput, keySerializer);
+        DataCollections.saveVersion(dataOutput, valueSerializer);
+        dataOutput.writeInt(value.size());
+        for (Map.Entry<K, V> entry : value.entrySet()) {
+            DataCollections.saveElement(dataOutput, keySerializer, entry.getKey());
+            DataCollections.saveElement(dataOutput, valueSerializer, entry.getValue());
+        }
+    }
+
+    @Override
+    protected Map<K, V> load(DataInput dataInput, int version) throws IOException {
+        int keyVersion = DataCollections.loadVersion(dataInput, version, keySerializer);
+        int valueVersion = DataCollections.loadVersion(dataInput, version, valueSerializer);
+        int size = DataCollections.readSize(dataInput);
+        Map<K, V> map = new LinkedHashMap<K, V>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            K key = DataCollections.loadElement(dataInput, keySerializer, keyVersion);
+            V value = DataCollections.loadElement(dataInput, valueSerializer, valueVersion);
+            map.put(key, value);
+        }
+        return map;
+    }
+
+}
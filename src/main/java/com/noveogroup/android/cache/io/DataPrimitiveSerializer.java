@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact serializers of boxed primitive values.
+ * The serializers are stateless, use the provided instances.
+ *
+ * @param <T> the type of values.
+ */
+public abstract class DataPrimitiveSerializer<T> extends DataSerializer<T> {
+
+    /**
+     * Serializer of {@link Boolean} values.
+     */
+    public static final DataPrimitiveSerializer<Boolean> BOOLEAN = new DataPrimitiveSerializer<Boolean>() {
+        @Override
+        protected void save(DataOutput dataOutput, Boolean value) throws IOException {
+            dataOutput.writeBoolean(value);
+        }
+
+        @Override
+        protected Boolean load(DataInput dataInput, int version) throws IOException {
+            return dataInput.readBoolean();
+        }
+    };
+
+    /**
+     * Serializer of {@link Byte} values.
+     */
+    public static final DataPrimitiveSerializer<Byte> BYTE = new DataPrimitiveSerializer<Byte>() {
+        @Override
+        protected void save(DataOutput dataOutput, Byte value) throws IOException {
+            dataOutput.writeByte(value);
+        }
+
+        @Override
+        protected Byte load(DataInput dataInput, int version) throws IOException {
+            return dataInput.readByte();
+        }
+    };
+
+    /**
+     * Serializer of {@link Short} values.
+     */
+    public static final DataPrimitiveSerializer<Short> SHORT = new DataPrimitiveSerializer<Short>() {
+        @Override
+        protected void save(DataOutput dataOutput, Short value) throws IOException {
+            dataOutput.writeShort(value);
+        }
+
+        @Override
+        protected Short load(DataInput dataInput, int version) throws IOException {
+            return dataInput.readShort();
+        }
+    };
+
+    /**
+     * Serializer of {@link Character} values.
+     */
+    public static final DataPrimitiveSerializer<Character> CHARACTER = new DataPrimitiveSerializer<Character>() {
+        @Override
+        protected void save(DataOutput dataOutput, Character value) throws IOException {
+            dataOutput.writeChar(value);
+        }
+
+        @Override
+        protected Character load(DataInput dataInput, int version) throws IOException {
+            return dataInput.readChar();
+        }
+    };
+
+    /**
+     * Serializer of {@link Integer} values.
+     */
+    public static final DataPrimitiveSerializer<Integer> INTEGER = new DataPrimitiveSerializer<Integer>() {
+        @Override
+        protected void save(DataOutput dataOutput, Integer value) throws IOException {
+            dataOutput.writeInt(value);
+        }
+
+        @Override
+        protected Integer load(DataInput dataInput, int version) throws IOException {
+            return dataInput.readInt();
+        }
+    };
+
+    /**
+     * Serializer of {@link Long} values.
+     */
+    public static final DataPrimitiveSerializer<Long> LONG = new DataPrimitiveSerializer<Long>() {
+        @Override
+        protected void save(DataOutput dataOutput, Long value) throws IOException {
+            dataOutput.writeLong(value);
+        }
+
+        @Override
+        protected Long load(DataInput dataInput, int version) throws IOException {
+            return dataInput.readLong();
+        }
+    };
+
+    /**
+     * Serializer of {@link Float} values.
+     */
+    public static final DataPrimitiveSerializer<Float> FLOAT = new DataPrimitiveSerializer<Float>() {
+        @Override
+        protected void save(DataOutput dataOutput, Float value) throws IOException {
+            dataOutput.writeFloat(value);
+        }
+
+        @Override
+        protected Float load(DataInput dataInput, int version) throws IOException {
+            return dataInput.readFloat();
+        }
+    };
+
+    /**
+     * Serializer of {@link Double} values.
+     */
+    public static final DataPrimitiveSerializer<Double> DOUBLE = new DataPrimitiveSerializer<Double>() {
+        @Override
+        protected void save(DataOutput dataOutput, Double value) throws IOException {
+            dataOutput.writeDouble(value);
+        }
+
+        @Override
+        protected Double load(DataInput dataInput, int version) throws IOException {
+            return dataInput.readDouble();
+        }
+    };
+
+    private DataPrimitiveSerializer() {
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.io;
+
+import java.io.*;
+
+/**
+ * Compact implementation of serializer that provides
+ * {@link DataInput} and {@link DataOutput} to user.
+ * <p/>
+ * Unlike {@link AbstractSerializer} it doesn't use object streams,
+ * so there is no stream header, block data framing and reflection.
+ * The value is prefixed with a small header: two bytes of magic,
+ * a version of the format and a null flag.
+ *
+ * @param <T> the type of values.
+ */
+public abstract class DataSerializer<T> implements Serializer<T> {
+
+    private static final int MAGIC = 0xDA7A;
+    private static final int FLAG_NULL = 0x01;
+    private static final int BUFFER_SIZE = 512;
+
+    /**
+     * Returns a version of the format written by this serializer.
+     * The version is stored in the header and passed to
+     * {@link #load(DataInput, int)}. Should be in range 0..255.
+     *
+     * @return the version.
+     */
+    protected int getVersion() {
+        return 1;
+    }
+
+    /**
+     * User should implement this method to save a non-null value to a provided data output.
+     *
+     * @param dataOutput the data output.
+     * @param value      the value.
+     * @throws IOException if I/O error occurred.
+     */
+    protected abstract void save(DataOutput dataOutput, T value) throws IOException;
+
+    /**
+     * User should implement this method to load a non-null value from a provided data input.
+     *
+     * @param dataInput the data input.
+     * @param version   the version of the format the value was written with.
+     * @return the value.
+     * @throws IOException if I/O error occurred.
+     */
+    protected abstract T load(DataInput dataInput, int version) throws IOException;
+
+    @Override
+    public void save(OutputSource outputSource, T value) throws IOException {
+        OutputStream outputStream = null;
+        try {
+            outputStream = outputSource.openOutputStream();
+            DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+            dataOutputStream.writeShort(MAGIC);
+            dataOutputStream.writeByte(getVersion());
+            dataOutputStream.writeByte(value == null ? FLAG_NULL : 0);
+            if (value != null) {
+                save(dataOutputStream, value);
+            }
+            dataOutputStream.flush();
+        } finally {
+            if (outputStream != null) {
+                outputStream.close();
+            }
+        }
+    }
+
+    @Override
+    public T load(InputSource inputSource) throws IOException {
+        InputStream inputStream = null;
+        try {
+            inputStream = inputSource.openInputStream();
+            DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(inputStream, BUFFER_SIZE));
+            if (dataInputStream.readUnsignedShort() != MAGIC) {
+                throw new IOException("unknown data format");
+            }
+            int version = dataInputStream.readUnsignedByte();
+            if (version > getVersion()) {
+                throw new IOException("unsupported data format version " + version);
+            }
+            int flags = dataInputStream.readUnsignedByte();
+            if ((flags & FLAG_NULL) != 0) {
+                return null;
+            }
+            return load(dataInputStream, version);
+        } finally {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact serializer of strings.
+ * Saves the length of encoded string followed by its bytes.
+ * The charset can be set in constructor, UTF-8 is used by default.
+ */
+public class DataStringSerializer extends DataSerializer<String> {
+
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    private final String charset;
+
+    /**
+     * Creates new serializer using UTF-8 charset.
+     */
+    public DataStringSerializer() {
+        this(DEFAULT_CHARSET);
+    }
+
+    /**
+     * Creates new serializer.
+     *
+     * @param charset the name of the charset.
+     */
+    public DataStringSerializer(String charset) {
+        this.charset = charset;
+    }
+
+    @Override
+    protected void save(DataOutput dataOutput, String value) throws IOException {
+        byte[] bytes = value.getBytes(charset);
+        dataOutput.writeInt(bytes.length);
+        dataOutput.write(bytes);
+    }
+
+    @Override
+    protected String load(DataInput dataInput, int version) throws IOException {
+        int length = dataInput.readInt();
+        if (length < 0) {
+            throw new IOException("illegal string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        dataInput.readFully(bytes);
+        return new String(bytes, charset);
+    }
+
+}
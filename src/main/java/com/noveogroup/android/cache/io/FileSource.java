@@ -44,6 +44,15 @@ public class FileSource implements InputSource, OutputSource {
         this.file = file;
     }
 
+    /**
+     * Returns the file of this source.
+     *
+     * @return the file.
+     */
+    public File getFile() {
+        return file;
+    }
+
     @Override
     public InputStream openInputStream() throws IOException {
         return new FileInputStream(file);
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * This implementation of serializer saves byte arrays as is,
+ * without any header or framing.
+ * <p/>
+ * When the value is loaded from a {@link FileSource} the array is
+ * allocated once using the length of the file and filled by positional
+ * reads of the file channel, so no intermediate copies are made.
+ * <p/>
+ * Null and empty arrays are indistinguishable: both are saved as an empty
+ * file and are loaded as an empty array.
+ *
+ * @see ByteBufferSerializer
+ */
+public class RawByteArraySerializer implements Serializer<byte[]> {
+
+    @Override
+    public void save(OutputSource outputSource, byte[] value) throws IOException {
+        OutputStream outputStream = outputSource.openOutputStream();
+        try {
+            if (value != null) {
+                outputStream.write(value);
+            }
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    @Override
+    public byte[] load(InputSource inputSource) throws IOException {
+        ByteBuffer buffer = Channels.load(inputSource, false);
+        byte[] value = buffer.array();
+        if (buffer.arrayOffset() == 0 && buffer.remaining() == value.length) {
+            return value;
+        }
+        value = new byte[buffer.remaining()];
+        buffer.get(value);
+        return value;
+    }
+
+}
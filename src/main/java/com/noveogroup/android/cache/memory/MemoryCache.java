@@ -26,16 +26,26 @@
 
 package com.noveogroup.android.cache.memory;
 
-import android.os.SystemClock;
+import android.util.Log;
 import com.noveogroup.android.cache.io.DefaultKeyManager;
 import com.noveogroup.android.cache.io.KeyManager;
 import com.noveogroup.android.cache.util.AbstractBackgroundCleaner;
+import com.noveogroup.android.cache.util.CacheStats;
+import com.noveogroup.android.cache.util.Clock;
+import com.noveogroup.android.cache.util.DefaultClock;
 import com.noveogroup.android.cache.util.CleanerHelper;
+import com.noveogroup.android.cache.util.DaemonThreadFactory;
+import com.noveogroup.android.cache.util.Loader;
+import com.noveogroup.android.cache.util.SingleFlight;
+import com.noveogroup.android.cache.util.StatsCounter;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Android Memory Cache
@@ -45,6 +55,11 @@ import java.util.Map;
  */
 public class MemoryCache<K, V> {
 
+    /**
+     * The log tag for memory cache.
+     */
+    public static final String TAG = "NoveoMemoryCache";
+
     /**
      * Default value of clean time delay.
      */
@@ -65,6 +80,14 @@ public class MemoryCache<K, V> {
      * Default value of expiration time.
      */
     public static final long DEFAULT_EXPIRATION_TIME = 60 * 1000L;
+    /**
+     * Default value of refresh-ahead time.
+     */
+    public static final long DEFAULT_REFRESH_AHEAD_TIME = -1;
+    /**
+     * Default value of refresh-after time.
+     */
+    public static final long DEFAULT_REFRESH_AFTER_TIME = -1;
 
     private static class KeyHolder<K, V> {
 
@@ -101,18 +124,42 @@ public class MemoryCache<K, V> {
 
         private final MemoryCache<K, V> owner;
         private V value;
+        private final long createTime;
+        private final long deadline;
         private long accessTime;
 
         public ValueHolder(MemoryCache<K, V> owner, V value) {
+            this(owner, value, -1);
+        }
+
+        public ValueHolder(MemoryCache<K, V> owner, V value, long timeToLive) {
             this.owner = owner;
             this.value = value;
-            this.accessTime = SystemClock.uptimeMillis();
+            this.createTime = owner.clock.uptimeMillis();
+            this.deadline = timeToLive < 0 ? -1 : createTime + timeToLive;
+            this.accessTime = createTime;
+        }
+
+        public long getCreateTime() {
+            return createTime;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public boolean isExpired() {
+            return deadline >= 0 && owner.clock.uptimeMillis() > deadline;
         }
 
         public synchronized long getAccessTime() {
             return accessTime;
         }
 
+        public synchronized boolean isCleared() {
+            return value == null;
+        }
+
         public synchronized long size() {
             return value == null ? 0 : owner.calculateSize(value);
         }
@@ -127,7 +174,7 @@ public class MemoryCache<K, V> {
 
         @Override
         public synchronized V get() {
-            accessTime = SystemClock.uptimeMillis();
+            accessTime = owner.clock.uptimeMillis();
             return value;
         }
 
@@ -191,6 +238,12 @@ public class MemoryCache<K, V> {
          * @return the reference to the value.
          */
         public Reference<V> get(K key) {
+            ValueHolder<K, V> valueHolder = lookup(key);
+            owner.statsCounter.recordRequest(valueHolder != null);
+            return valueHolder != null ? valueHolder : new ValueHolder<K, V>(owner, null);
+        }
+
+        private ValueHolder<K, V> lookup(K key) {
             synchronized (owner.lock) {
                 owner.cleaner.access(false, owner.getCleanTimeDelay(), owner.getCleanModificationCount());
 
@@ -199,6 +252,9 @@ public class MemoryCache<K, V> {
                 ValueHolder<K, V> valueHolder = owner.cache.get(keyHolder);
 
                 if (valueHolder != null) {
+                    if (valueHolder.isExpired()) {
+                        valueHolder.clear();
+                    }
                     if (valueHolder.get() == null) {
                         owner.cache.remove(keyHolder);
                         owner.associations.remove(valueHolder);
@@ -210,7 +266,7 @@ public class MemoryCache<K, V> {
                     owner.associations.associate(valueHolder, token);
                 }
 
-                return valueHolder != null ? valueHolder : new ValueHolder<K, V>(owner, null);
+                return valueHolder;
             }
         }
 
@@ -221,6 +277,21 @@ public class MemoryCache<K, V> {
          * @param value the value.
          */
         public void put(K key, V value) {
+            put(key, value, -1);
+        }
+
+        /**
+         * Puts a value to the cache and refers it with a key.
+         * The value will expire after the specified time to live.
+         * Expired values are not returned by the cache and are
+         * deleted first during cleaning.
+         *
+         * @param key        the key.
+         * @param value      the value.
+         * @param timeToLive the time to live in milliseconds.
+         *                   Negative value means the value never expires.
+         */
+        public void put(K key, V value, long timeToLive) {
             synchronized (owner.lock) {
                 owner.cleaner.access(true, owner.getCleanTimeDelay(), owner.getCleanModificationCount());
 
@@ -233,7 +304,8 @@ public class MemoryCache<K, V> {
                 }
 
                 if (value != null) {
-                    valueHolder = new ValueHolder<K, V>(owner, value);
+                    owner.statsCounter.recordPut();
+                    valueHolder = new ValueHolder<K, V>(owner, value, timeToLive);
                     owner.cache.put(keyHolder, valueHolder);
                     owner.associations.add(valueHolder);
                     owner.associations.associate(valueHolder, token);
@@ -243,29 +315,158 @@ public class MemoryCache<K, V> {
             }
         }
 
+        /**
+         * Checks if the cache contains a value referred by a key.
+         * Unlike {@link #get(Object)} the check is not counted as a request,
+         * doesn't update access time of the value and doesn't associate
+         * the value with the access object.
+         *
+         * @param key the key.
+         * @return true if the value exists.
+         */
+        public boolean contains(K key) {
+            synchronized (owner.lock) {
+                ValueHolder<K, V> valueHolder = owner.cache.get(new KeyHolder<K, V>(owner, key));
+                return valueHolder != null && !valueHolder.isExpired() && !valueHolder.isCleared();
+            }
+        }
+
+        /**
+         * Puts a value to the cache and refers it with a key
+         * if the key doesn't refer any value yet.
+         *
+         * @param key   the key.
+         * @param value the value.
+         * @return true if the value has been put.
+         */
+        public boolean putIfAbsent(K key, V value) {
+            synchronized (owner.lock) {
+                if (value == null || lookup(key) != null) {
+                    return false;
+                }
+                put(key, value);
+                return true;
+            }
+        }
+
+        /**
+         * Returns a reference to cached value. If the value is missing
+         * it will be loaded using the specified loader and put to the cache.
+         * <p/>
+         * Concurrent loads of the same key are coalesced: only one loader
+         * is called and other callers wait for its result. The loaded value
+         * is returned even if it has been evicted right after loading, for
+         * example if it is larger than max size of the cache; in this case
+         * {@link MemoryCache#releaseValue(Object)} may already be called for it.
+         * <p/>
+         * If the value has been put with time to live and is close to its
+         * deadline, or it is older than refresh-after time, the loader will
+         * be called in background to refresh the value. The current value is
+         * returned until the new one is put.
+         *
+         * @param key    the key.
+         * @param loader the loader.
+         * @return the reference to the value.
+         * @throws ExecutionException if the loader has thrown an exception.
+         * @see MemoryCache#setRefreshAheadTime(long)
+         * @see MemoryCache#setRefreshAfterTime(long)
+         */
+        public Reference<V> get(K key, final Loader<K, V> loader) throws ExecutionException {
+            ValueHolder<K, V> valueHolder = lookup(key);
+            owner.statsCounter.recordRequest(valueHolder != null);
+            if (valueHolder != null) {
+                if (owner.isRefreshNeeded(valueHolder)) {
+                    refresh(key, loader);
+                }
+                return valueHolder;
+            }
+
+            V value = owner.singleFlight.load(key, new Loader<K, V>() {
+                @Override
+                public V load(K key) throws Exception {
+                    // the value could be loaded by a previous flight
+                    ValueHolder<K, V> valueHolder = lookup(key);
+                    if (valueHolder != null) {
+                        return valueHolder.get();
+                    }
+
+                    V value = owner.load(key, loader);
+                    put(key, value);
+                    return value;
+                }
+            });
+
+            // the loaded value could be evicted already
+            valueHolder = lookup(key);
+            return valueHolder != null ? valueHolder : new ValueHolder<K, V>(owner, value);
+        }
+
+        private void refresh(final K key, final Loader<K, V> loader) {
+            if (owner.singleFlight.isLoading(key)) {
+                return;
+            }
+
+            owner.getRefreshExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        owner.singleFlight.load(key, new Loader<K, V>() {
+                            @Override
+                            public V load(K key) throws Exception {
+                                // the value could be refreshed by a previous flight
+                                ValueHolder<K, V> valueHolder = lookup(key);
+                                V value = valueHolder != null ? valueHolder.get() : null;
+                                if (value == null || owner.isRefreshNeeded(valueHolder)) {
+                                    V newValue = owner.load(key, loader);
+                                    if (newValue != null) {
+                                        long deadline = valueHolder != null ? valueHolder.getDeadline() : -1;
+                                        put(key, newValue, deadline < 0 ? -1 : deadline - valueHolder.getCreateTime());
+                                        value = newValue;
+                                    }
+                                }
+                                return value;
+                            }
+                        });
+                    } catch (ExecutionException e) {
+                        // keep the current value, it will be refreshed on next access
+                        Log.w(TAG, "cannot refresh a value", e);
+                    }
+                }
+            });
+        }
+
     }
 
     private class CleanerItem extends CleanerHelper.Item<ValueHolder> {
 
         public CleanerItem(ValueHolder valueHolder) {
             super(valueHolder,
-                    System.currentTimeMillis() - valueHolder.getAccessTime(),
+                    clock.uptimeMillis() - valueHolder.getAccessTime(),
                     valueHolder.size());
         }
 
         @Override
         public void delete() {
+            if (!source.isCleared()) {
+                if (source.isExpired()) {
+                    statsCounter.recordEviction(CacheStats.EvictionReason.EXPIRATION);
+                } else if (getMaxAge() >= 0 && age > getMaxAge()) {
+                    statsCounter.recordEviction(CacheStats.EvictionReason.MAX_AGE);
+                } else {
+                    statsCounter.recordEviction(CacheStats.EvictionReason.SIZE);
+                }
+            }
             source.clear();
         }
 
         @Override
         public boolean canDelete() {
-            return age < 0 || age > getExpirationTime();
+            return age < 0 || age > getExpirationTime() || source.isExpired();
         }
 
         @Override
         public boolean shouldDelete() {
-            return source.get() == null || (getMaxAge() >= 0 && age > getMaxAge());
+            return source.get() == null || (getMaxAge() >= 0 && age > getMaxAge()) || source.isExpired();
         }
 
     }
@@ -277,16 +478,30 @@ public class MemoryCache<K, V> {
     private final Access<K, V> access = new Access<K, V>(this, null);
 
     private final KeyManager<K> keyManager;
+    private final Clock clock;
+    private final Cleaner cleaner;
+    private final SingleFlight<K, V> singleFlight;
+    private final StatsCounter statsCounter = new StatsCounter();
 
     private volatile long cleanTimeDelay = DEFAULT_CLEAN_TIME_DELAY;
     private volatile long cleanModificationCount = DEFAULT_CLEAN_MODIFICATION_COUNT;
     private volatile long maxAge = DEFAULT_MAX_AGE;
     private volatile long maxSize = DEFAULT_MAX_SIZE;
     private volatile long expirationTime = DEFAULT_EXPIRATION_TIME;
+    private volatile long refreshAheadTime = DEFAULT_REFRESH_AHEAD_TIME;
+    private volatile long refreshAfterTime = DEFAULT_REFRESH_AFTER_TIME;
+    private volatile Executor refreshExecutor;
+
+    private class Cleaner extends AbstractBackgroundCleaner {
+
+        public Cleaner(Clock clock) {
+            super(clock);
+        }
 
-    private AbstractBackgroundCleaner cleaner = new AbstractBackgroundCleaner() {
         @Override
         protected void cleanCache() {
+            long time = clock.uptimeMillis();
+
             ArrayList<ValueHolder> list;
             synchronized (lock) {
                 list = new ArrayList<ValueHolder>(cache.values());
@@ -301,8 +516,11 @@ public class MemoryCache<K, V> {
                 }
             }, list, expiredList, protectedList);
             CleanerHelper.clean(expiredList, protectedList, maxSize);
+
+            statsCounter.recordClean(clock.uptimeMillis() - time);
         }
-    };
+
+    }
 
     /**
      * Creates new memory cache.
@@ -317,7 +535,24 @@ public class MemoryCache<K, V> {
      * @param keyManager a key manager.
      */
     public MemoryCache(KeyManager<K> keyManager) {
+        this(keyManager, new DefaultClock());
+    }
+
+    /**
+     * Creates new memory cache.
+     *
+     * @param keyManager a key manager.
+     * @param clock      a clock to measure ages of values.
+     */
+    public MemoryCache(KeyManager<K> keyManager, Clock clock) {
+        if (clock == null) {
+            throw new NullPointerException();
+        }
+
         this.keyManager = keyManager;
+        this.clock = clock;
+        this.cleaner = new Cleaner(clock);
+        this.singleFlight = new SingleFlight<K, V>(keyManager);
     }
 
     /**
@@ -338,6 +573,26 @@ public class MemoryCache<K, V> {
         return 1;
     }
 
+    /**
+     * Returns size of the value as it is counted by the cache.
+     *
+     * @param value the value.
+     * @return the size of the value.
+     * @see #getMaxSize()
+     */
+    public long sizeOf(V value) {
+        return calculateSize(value);
+    }
+
+    /**
+     * Returns the clock of the cache.
+     *
+     * @return the clock.
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
     /**
      * Returns clean time delay value.
      *
@@ -428,6 +683,142 @@ public class MemoryCache<K, V> {
         this.expirationTime = expirationTime;
     }
 
+    /**
+     * Returns refresh-ahead time value.
+     *
+     * @return refresh-ahead time.
+     */
+    public long getRefreshAheadTime() {
+        return refreshAheadTime;
+    }
+
+    /**
+     * Sets refresh-ahead time value.
+     * <p/>
+     * When a value put with time to live is accessed by
+     * {@link #get(Object, Loader)} and its deadline is closer than this time,
+     * the loader will be called in background to refresh the value.
+     * Negative value turns refresh-ahead off.
+     * <p/>
+     * Values without time to live are evicted by max age counted from their
+     * last access, so an accessed value never approaches it. Such values are
+     * refreshed according to refresh-after time.
+     *
+     * @param refreshAheadTime new refresh-ahead time.
+     * @see #setRefreshAfterTime(long)
+     */
+    public void setRefreshAheadTime(long refreshAheadTime) {
+        this.refreshAheadTime = refreshAheadTime;
+    }
+
+    /**
+     * Returns refresh-after time value.
+     *
+     * @return refresh-after time.
+     */
+    public long getRefreshAfterTime() {
+        return refreshAfterTime;
+    }
+
+    /**
+     * Sets refresh-after time value.
+     * <p/>
+     * When a value without time to live accessed by {@link #get(Object, Loader)}
+     * has been put to the cache more than this time ago, the loader will be
+     * called in background to refresh the value. Negative value turns it off.
+     *
+     * @param refreshAfterTime new refresh-after time.
+     */
+    public void setRefreshAfterTime(long refreshAfterTime) {
+        this.refreshAfterTime = refreshAfterTime;
+    }
+
+    /**
+     * Returns an executor used to refresh values in background.
+     *
+     * @return the executor.
+     */
+    public Executor getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            synchronized (lock) {
+                if (refreshExecutor == null) {
+                    refreshExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("NoveoMemoryCache-refresh"));
+                }
+            }
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * Sets an executor used to refresh values in background.
+     *
+     * @param refreshExecutor new executor.
+     */
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        if (refreshExecutor == null) {
+            throw new NullPointerException();
+        }
+
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Checks if collecting of statistics is turned on.
+     *
+     * @return true if statistics is collected.
+     */
+    public boolean isStatsEnabled() {
+        return statsCounter.isEnabled();
+    }
+
+    /**
+     * Turns collecting of statistics on and off.
+     *
+     * @param statsEnabled true to collect statistics.
+     */
+    public void setStatsEnabled(boolean statsEnabled) {
+        statsCounter.setEnabled(statsEnabled);
+    }
+
+    /**
+     * Returns a snapshot of statistics of the cache.
+     *
+     * @return the statistics.
+     * @see #setStatsEnabled(boolean)
+     */
+    public CacheStats getStats() {
+        return statsCounter.snapshot();
+    }
+
+    /**
+     * Resets statistics of the cache.
+     */
+    public void resetStats() {
+        statsCounter.reset();
+    }
+
+    private V load(K key, Loader<K, V> loader) throws Exception {
+        long time = System.nanoTime();
+        boolean success = false;
+        try {
+            V value = loader.load(key);
+            success = true;
+            return value;
+        } finally {
+            statsCounter.recordLoad(success, System.nanoTime() - time);
+        }
+    }
+
+    private boolean isRefreshNeeded(ValueHolder<K, V> valueHolder) {
+        long time = clock.uptimeMillis();
+        if (valueHolder.getDeadline() >= 0) {
+            long refreshAheadTime = getRefreshAheadTime();
+            return refreshAheadTime >= 0 && time > valueHolder.getDeadline() - refreshAheadTime;
+        }
+        long refreshAfterTime = getRefreshAfterTime();
+        return refreshAfterTime >= 0 && time - valueHolder.getCreateTime() > refreshAfterTime;
+    }
+
     /**
      * Erases the cache.
      */
@@ -496,6 +887,21 @@ public class MemoryCache<K, V> {
         return access.get(key);
     }
 
+    /**
+     * Returns a reference to cached value loading it if it is missing.
+     * <p/>
+     * <b>Note</b>: The main access object is used in this helper method.
+     *
+     * @param key    the key.
+     * @param loader the loader.
+     * @return the reference to the value.
+     * @throws ExecutionException if the loader has thrown an exception.
+     * @see Access#get(Object, Loader)
+     */
+    public Reference<V> get(K key, Loader<K, V> loader) throws ExecutionException {
+        return access.get(key, loader);
+    }
+
     /**
      * Puts a value to the cache and refers it with a key.
      * <p/>
@@ -508,4 +914,47 @@ public class MemoryCache<K, V> {
         access.put(key, value);
     }
 
+    /**
+     * Puts a value to the cache and refers it with a key.
+     * The value will expire after the specified time to live.
+     * <p/>
+     * <b>Note</b>: The main access object is used in this helper method.
+     *
+     * @param key        the key.
+     * @param value      the value.
+     * @param timeToLive the time to live in milliseconds.
+     *                   Negative value means the value never expires.
+     * @see Access#put(Object, Object, long)
+     */
+    public void put(K key, V value, long timeToLive) {
+        access.put(key, value, timeToLive);
+    }
+
+    /**
+     * Checks if the cache contains a value referred by a key.
+     * <p/>
+     * <b>Note</b>: The main access object is used in this helper method.
+     *
+     * @param key the key.
+     * @return true if the value exists.
+     * @see Access#contains(Object)
+     */
+    public boolean contains(K key) {
+        return access.contains(key);
+    }
+
+    /**
+     * Puts a value to the cache if the key doesn't refer any value yet.
+     * <p/>
+     * <b>Note</b>: The main access object is used in this helper method.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return true if the value has been put.
+     * @see Access#putIfAbsent(Object, Object)
+     */
+    public boolean putIfAbsent(K key, V value) {
+        return access.putIfAbsent(key, value);
+    }
+
 }
@@ -0,0 +1,535 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.tiered;
+
+import android.util.Log;
+import com.noveogroup.android.cache.disk.DiskCache;
+import com.noveogroup.android.cache.io.DefaultKeyManager;
+import com.noveogroup.android.cache.io.KeyManager;
+import com.noveogroup.android.cache.io.Serializer;
+import com.noveogroup.android.cache.memory.MemoryCache;
+import com.noveogroup.android.cache.util.DaemonThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache. Combines a {@link MemoryCache} over a {@link DiskCache}.
+ * <p/>
+ * Values are searched in the memory cache first and then in the disk cache.
+ * Values found on the disk are promoted to the memory cache. Modifications
+ * are applied to both tiers.
+ * <p/>
+ * Values being written to the disk tier are returned from a table of
+ * pending writes, and values read from the disk are not promoted if their
+ * keys have been modified during the read, so a stale disk value never
+ * replaces a newer value or a removal in the memory tier.
+ *
+ * @param <K> a type of keys.
+ * @param <V> a type of values.
+ */
+public class TieredCache<K, V> {
+
+    /**
+     * The log tag for tiered cache.
+     */
+    public static final String TAG = "NoveoTieredCache";
+
+    /**
+     * Write modes of the tiered cache.
+     */
+    public static enum WriteMode {
+
+        /**
+         * Values are written to the disk cache synchronously.
+         */
+        WRITE_THROUGH,
+
+        /**
+         * Values are written to the disk cache in a background thread.
+         */
+        WRITE_BEHIND
+
+    }
+
+    private static final int STRIPE_COUNT = 64;
+
+    private static class KeyHolder<K> {
+
+        private final KeyManager<K> keyManager;
+        private final K key;
+
+        public KeyHolder(KeyManager<K> keyManager, K key) {
+            this.keyManager = keyManager;
+            this.key = key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            KeyHolder<K> keyHolder = (KeyHolder<K>) o;
+            return keyManager.equals(key, keyHolder.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return keyManager.hashCode(key);
+        }
+
+    }
+
+    private static class PendingWrite<V> {
+
+        private V value;
+        private int count;
+
+    }
+
+    private final MemoryCache<K, V> memoryCache;
+    private final DiskCache<K> diskCache;
+    private final Serializer<V> serializer;
+    private final KeyManager<K> keyManager;
+
+    private final Object lock = new Object();
+    private final Map<KeyHolder<K>, PendingWrite<V>> pendingWrites = new HashMap<KeyHolder<K>, PendingWrite<V>>();
+    private final long[] modificationCounts = new long[STRIPE_COUNT];
+
+    private volatile WriteMode writeMode = WriteMode.WRITE_THROUGH;
+
+    private final AtomicLong memoryHitCount = new AtomicLong();
+    private final AtomicLong diskHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory(TAG));
+
+    /**
+     * Creates new tiered cache using default key manager.
+     *
+     * @param memoryCache the memory cache.
+     * @param diskCache   the disk cache.
+     * @param serializer  a value serializer.
+     */
+    public TieredCache(MemoryCache<K, V> memoryCache, DiskCache<K> diskCache, Serializer<V> serializer) {
+        this(memoryCache, diskCache, serializer, new DefaultKeyManager<K>());
+    }
+
+    /**
+     * Creates new tiered cache.
+     *
+     * @param memoryCache the memory cache.
+     * @param diskCache   the disk cache.
+     * @param serializer  a value serializer.
+     * @param keyManager  a key manager. It should be the same as key managers of the tiers.
+     */
+    public TieredCache(MemoryCache<K, V> memoryCache, DiskCache<K> diskCache, Serializer<V> serializer,
+                       KeyManager<K> keyManager) {
+        if (memoryCache == null || diskCache == null || serializer == null || keyManager == null) {
+            throw new NullPointerException();
+        }
+
+        this.memoryCache = memoryCache;
+        this.diskCache = diskCache;
+        this.serializer = serializer;
+        this.keyManager = keyManager;
+    }
+
+    /**
+     * Returns the memory tier.
+     *
+     * @return the memory cache.
+     */
+    public MemoryCache<K, V> getMemoryCache() {
+        return memoryCache;
+    }
+
+    /**
+     * Returns the disk tier.
+     *
+     * @return the disk cache.
+     */
+    public DiskCache<K> getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * Returns write mode.
+     *
+     * @return the write mode.
+     */
+    public WriteMode getWriteMode() {
+        return writeMode;
+    }
+
+    /**
+     * Sets write mode.
+     *
+     * @param writeMode new write mode.
+     */
+    public void setWriteMode(WriteMode writeMode) {
+        if (writeMode == null) {
+            throw new NullPointerException();
+        }
+
+        this.writeMode = writeMode;
+    }
+
+    /**
+     * Returns count of hits in the memory tier.
+     *
+     * @return the count of hits.
+     */
+    public long getMemoryHitCount() {
+        return memoryHitCount.get();
+    }
+
+    /**
+     * Returns count of hits in the disk tier.
+     *
+     * @return the count of hits.
+     */
+    public long getDiskHitCount() {
+        return diskHitCount.get();
+    }
+
+    /**
+     * Returns count of misses in both tiers.
+     *
+     * @return the count of misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Resets hit and miss counters.
+     */
+    public void resetCounters() {
+        memoryHitCount.set(0);
+        diskHitCount.set(0);
+        missCount.set(0);
+    }
+
+    private int stripe(K key) {
+        return (keyManager.hashCode(key) & Integer.MAX_VALUE) % STRIPE_COUNT;
+    }
+
+    // registers a write of the key, should be called before the memory tier is modified
+    private PendingWrite<V> beginWrite(K key, V value) {
+        synchronized (lock) {
+            KeyHolder<K> keyHolder = new KeyHolder<K>(keyManager, key);
+            PendingWrite<V> pendingWrite = pendingWrites.get(keyHolder);
+            if (pendingWrite == null) {
+                pendingWrite = new PendingWrite<V>();
+                pendingWrites.put(keyHolder, pendingWrite);
+            }
+            pendingWrite.value = value;
+            pendingWrite.count++;
+            modificationCounts[stripe(key)]++;
+            return pendingWrite;
+        }
+    }
+
+    private void endWrite(K key, PendingWrite<V> pendingWrite) {
+        synchronized (lock) {
+            // the pending write may have been dropped by erase
+            KeyHolder<K> keyHolder = new KeyHolder<K>(keyManager, key);
+            if (pendingWrites.get(keyHolder) == pendingWrite && --pendingWrite.count == 0) {
+                pendingWrites.remove(keyHolder);
+            }
+        }
+    }
+
+    private void submit(final K key, final PendingWrite<V> pendingWrite, final Runnable runnable) {
+        Runnable write = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } finally {
+                    endWrite(key, pendingWrite);
+                }
+            }
+        };
+
+        execute(write);
+    }
+
+    private void execute(Runnable runnable) {
+        if (writeMode == WriteMode.WRITE_BEHIND) {
+            try {
+                writeExecutor.execute(runnable);
+                return;
+            } catch (RejectedExecutionException e) {
+                // the cache is closed, write synchronously
+            }
+        }
+        runnable.run();
+    }
+
+    /**
+     * Puts a value read from the disk tier to the memory tier unless the key
+     * has been modified since the specified modification count was taken.
+     */
+    private boolean promote(K key, V value, long modificationCount) {
+        synchronized (lock) {
+            if (modificationCounts[stripe(key)] != modificationCount
+                    || pendingWrites.containsKey(new KeyHolder<K>(keyManager, key))) {
+                return false;
+            }
+            return memoryCache.putIfAbsent(key, value);
+        }
+    }
+
+    /**
+     * Returns a value corresponding to the specified key.
+     * A value found in the disk cache is promoted to the memory cache.
+     *
+     * @param key the key.
+     * @return the value or null if nothing was found.
+     */
+    public V get(K key) {
+        V value = memoryCache.get(key).get();
+        if (value != null) {
+            memoryHitCount.incrementAndGet();
+            return value;
+        }
+
+        long modificationCount;
+        synchronized (lock) {
+            // the disk tier may be out of date
+            PendingWrite<V> pendingWrite = pendingWrites.get(new KeyHolder<K>(keyManager, key));
+            if (pendingWrite != null) {
+                if (pendingWrite.value == null) {
+                    missCount.incrementAndGet();
+                } else {
+                    memoryHitCount.incrementAndGet();
+                }
+                return pendingWrite.value;
+            }
+            modificationCount = modificationCounts[stripe(key)];
+        }
+
+        value = diskCache.get(key, serializer);
+        if (value != null) {
+            diskHitCount.incrementAndGet();
+            promote(key, value, modificationCount);
+            return value;
+        }
+
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Checks if any of tiers contains a value corresponding to the specified key.
+     *
+     * @param key the key.
+     * @return true if the value exists.
+     */
+    public boolean contains(K key) {
+        if (memoryCache.contains(key)) {
+            return true;
+        }
+        synchronized (lock) {
+            PendingWrite<V> pendingWrite = pendingWrites.get(new KeyHolder<K>(keyManager, key));
+            if (pendingWrite != null) {
+                return pendingWrite.value != null;
+            }
+        }
+        return diskCache.contains(key);
+    }
+
+    /**
+     * Puts a value to both tiers. The value is written to the disk cache
+     * according to the current {@link WriteMode}.
+     *
+     * @param key   the key.
+     * @param value the value. Null value removes the entry.
+     */
+    public void put(final K key, final V value) {
+        if (value == null) {
+            remove(key);
+            return;
+        }
+
+        PendingWrite<V> pendingWrite = beginWrite(key, value);
+        memoryCache.put(key, value);
+        submit(key, pendingWrite, new Runnable() {
+            @Override
+            public void run() {
+                diskCache.put(key, value, serializer);
+            }
+        });
+    }
+
+    /**
+     * Removes a value from both tiers.
+     *
+     * @param key the key.
+     */
+    public void remove(final K key) {
+        PendingWrite<V> pendingWrite = beginWrite(key, null);
+        memoryCache.put(key, null);
+        submit(key, pendingWrite, new Runnable() {
+            @Override
+            public void run() {
+                diskCache.remove(key);
+            }
+        });
+    }
+
+    /**
+     * Loads values of the keys from the disk cache to the memory cache
+     * in background.
+     * <p/>
+     * Keys with pending writes are skipped. A loaded value is not promoted
+     * if a write of a key of the same stripe has begun after the prefetch
+     * started, because the disk tier could return an outdated value.
+     *
+     * @param keys the keys.
+     * @return the future count of values put to the memory cache.
+     * @see DiskCache#prefetch(Collection, Serializer, DiskCache.PrefetchTarget, int)
+     */
+    public Future<Integer> prefetch(Collection<K> keys) {
+        final long[] modificationCounts;
+        List<K> prefetchKeys = new ArrayList<K>(keys.size());
+        synchronized (lock) {
+            modificationCounts = this.modificationCounts.clone();
+            for (K key : keys) {
+                if (!pendingWrites.containsKey(new KeyHolder<K>(keyManager, key))) {
+                    prefetchKeys.add(key);
+                }
+            }
+        }
+
+        return diskCache.prefetch(prefetchKeys, serializer, new DiskCache.PrefetchTarget<K, V>() {
+            @Override
+            public long getFreeSize() {
+                long maxSize = memoryCache.getMaxSize();
+                return maxSize < 0 ? Long.MAX_VALUE : maxSize - memoryCache.size();
+            }
+
+            @Override
+            public boolean contains(K key) {
+                return memoryCache.contains(key);
+            }
+
+            @Override
+            public long sizeOf(V value) {
+                return memoryCache.sizeOf(value);
+            }
+
+            @Override
+            public boolean putIfAbsent(K key, V value) {
+                return promote(key, value, modificationCounts[stripe(key)]);
+            }
+        }, DiskCache.DEFAULT_PREFETCH_PARALLELISM);
+    }
+
+    /**
+     * Waits until all pending background writes are done.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    public void flush() throws InterruptedException {
+        try {
+            writeExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } catch (RejectedExecutionException e) {
+            // the cache is closed
+            writeExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Log.w(TAG, "cannot flush pending writes", e);
+        }
+    }
+
+    /**
+     * Erases both tiers. In {@link WriteMode#WRITE_BEHIND} mode the method
+     * waits until the writes made before it are done, so they cannot
+     * restore erased values.
+     */
+    public void erase() {
+        boolean flushed = true;
+        if (writeMode == WriteMode.WRITE_BEHIND) {
+            try {
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flushed = false;
+            }
+        }
+
+        synchronized (lock) {
+            // values being read from the disk must not be promoted
+            pendingWrites.clear();
+            for (int i = 0; i < STRIPE_COUNT; i++) {
+                modificationCounts[i]++;
+            }
+        }
+        memoryCache.erase();
+        if (flushed) {
+            diskCache.erase();
+        } else {
+            // erase the disk tier after the pending writes
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    diskCache.erase();
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits until all pending background writes are done and stops
+     * the background thread. Writes made after closing are done
+     * synchronously.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    public void close() throws InterruptedException {
+        writeExecutor.shutdown();
+        writeExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -26,7 +26,7 @@
 
 package com.noveogroup.android.cache.util;
 
-import android.os.SystemClock;
+import java.util.Random;
 
 /**
  * Abstract background cache cleaner.
@@ -34,18 +34,67 @@ import android.os.SystemClock;
 public abstract class AbstractBackgroundCleaner {
 
     private final Object lock = new Object();
+    private final Clock clock;
+    private final Random random = new Random();
     private boolean threadAlive = false;
 
     private long lastCleanTime = 0;
     private long modificationCount = 0;
+    private long delayOffset = 0;
+
+    /**
+     * Creates new cleaner using default clock.
+     */
+    public AbstractBackgroundCleaner() {
+        this(new DefaultClock());
+    }
+
+    /**
+     * Creates new cleaner.
+     *
+     * @param clock the clock to schedule cleanings.
+     */
+    public AbstractBackgroundCleaner(Clock clock) {
+        if (clock == null) {
+            throw new NullPointerException();
+        }
+
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the clock of the cleaner.
+     *
+     * @return the clock.
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Returns maximum random offset added to the time delay between
+     * cleanings. Subclasses can override it to spread cleanings of
+     * several caches sharing the same storage. Returns 0 by default.
+     *
+     * @return the jitter in milliseconds.
+     */
+    protected long getCleanJitter() {
+        return 0;
+    }
+
+    private long nextDelayOffset() {
+        long jitter = getCleanJitter();
+        return jitter > 0 ? (long) (random.nextDouble() * jitter) : 0;
+    }
 
     /**
      * Starts a cleaning process if it isn't running now.
      */
     public void clean() {
         synchronized (lock) {
-            lastCleanTime = SystemClock.uptimeMillis();
+            lastCleanTime = clock.uptimeMillis();
             modificationCount = 0;
+            delayOffset = nextDelayOffset();
 
             if (threadAlive) {
                 return;
@@ -84,9 +133,11 @@ public abstract class AbstractBackgroundCleaner {
             }
 
             if (lastCleanTime == 0) {
-                lastCleanTime = SystemClock.uptimeMillis();
+                lastCleanTime = clock.uptimeMillis();
+                delayOffset = nextDelayOffset();
             }
-            if (SystemClock.uptimeMillis() - lastCleanTime > cleanTimeDelay || modificationCount > cleanModificationCount) {
+            if (clock.uptimeMillis() - lastCleanTime > cleanTimeDelay + delayOffset
+                    || modificationCount > cleanModificationCount) {
                 clean();
             }
         }
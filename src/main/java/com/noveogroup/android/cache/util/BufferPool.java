@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.util;
+
+/**
+ * Bounded thread-safe pool of byte buffers of the same size.
+ * <p/>
+ * Buffers are acquired by I/O paths of the caches instead of allocating
+ * new ones on every call. A buffer should be released after use and
+ * must not be used after release. If the pool is empty a new buffer is
+ * allocated, if the pool is full a released buffer is dropped.
+ */
+public class BufferPool {
+
+    /**
+     * Default size of buffers.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    /**
+     * Default maximum count of pooled buffers.
+     */
+    public static final int DEFAULT_MAX_COUNT = 16;
+
+    private static volatile BufferPool instance = new BufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_COUNT);
+
+    /**
+     * Returns the pool shared by the library.
+     *
+     * @return the pool.
+     */
+    public static BufferPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Replaces the pool shared by the library. Can be used to tune
+     * sizes of buffers. Buffers acquired from the previous pool are
+     * released to it.
+     *
+     * @param pool new pool.
+     */
+    public static void setInstance(BufferPool pool) {
+        if (pool == null) {
+            throw new NullPointerException();
+        }
+
+        instance = pool;
+    }
+
+    private final int bufferSize;
+    private final byte[][] buffers;
+    private int count = 0;
+
+    /**
+     * Creates new pool.
+     *
+     * @param bufferSize size of buffers.
+     * @param maxCount   maximum count of pooled buffers. Zero turns pooling off.
+     */
+    public BufferPool(int bufferSize, int maxCount) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size should be positive");
+        }
+        if (maxCount < 0) {
+            throw new IllegalArgumentException("max count should not be negative");
+        }
+
+        this.bufferSize = bufferSize;
+        this.buffers = new byte[maxCount][];
+    }
+
+    /**
+     * Returns size of buffers.
+     *
+     * @return the size of buffers.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns maximum count of pooled buffers.
+     *
+     * @return the maximum count.
+     */
+    public int getMaxCount() {
+        return buffers.length;
+    }
+
+    /**
+     * Takes a buffer from the pool or allocates new one.
+     *
+     * @return the buffer of {@link #getBufferSize()} bytes.
+     */
+    public byte[] acquire() {
+        synchronized (buffers) {
+            if (count > 0) {
+                byte[] buffer = buffers[--count];
+                buffers[count] = null;
+                return buffer;
+            }
+        }
+        return new byte[bufferSize];
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     * Buffers of other sizes are ignored.
+     *
+     * @param buffer the buffer.
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length != bufferSize) {
+            return;
+        }
+        synchronized (buffers) {
+            if (count < buffers.length) {
+                buffers[count++] = buffer;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.util;
+
+/**
+ * Immutable snapshot of cache statistics.
+ *
+ * @see StatsCounter
+ */
+public class CacheStats {
+
+    /**
+     * Reasons of evictions.
+     */
+    public static enum EvictionReason {
+
+        /**
+         * The entry has not been accessed longer than max age.
+         */
+        MAX_AGE,
+
+        /**
+         * The time to live of the entry has passed.
+         */
+        EXPIRATION,
+
+        /**
+         * The entry has been deleted to fit the cache in max size.
+         */
+        SIZE
+
+    }
+
+    private final long hitCount;
+    private final long missCount;
+    private final long putCount;
+    private final long maxAgeEvictionCount;
+    private final long expirationEvictionCount;
+    private final long sizeEvictionCount;
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long cleanCount;
+    private final long totalCleanTime;
+
+    /**
+     * Creates new statistics snapshot.
+     *
+     * @param hitCount                count of hits.
+     * @param missCount               count of misses.
+     * @param putCount                count of puts.
+     * @param maxAgeEvictionCount     count of evictions because of max age.
+     * @param expirationEvictionCount count of evictions because of expiration.
+     * @param sizeEvictionCount       count of evictions because of max size.
+     * @param bytesRead               count of bytes read.
+     * @param bytesWritten            count of bytes written.
+     * @param loadSuccessCount        count of successful loads.
+     * @param loadFailureCount        count of failed loads.
+     * @param totalLoadTime           total time of loads in nanoseconds.
+     * @param cleanCount              count of cleanings.
+     * @param totalCleanTime          total time of cleanings in milliseconds.
+     */
+    public CacheStats(long hitCount, long missCount, long putCount,
+                      long maxAgeEvictionCount, long expirationEvictionCount, long sizeEvictionCount,
+                      long bytesRead, long bytesWritten,
+                      long loadSuccessCount, long loadFailureCount, long totalLoadTime,
+                      long cleanCount, long totalCleanTime) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.putCount = putCount;
+        this.maxAgeEvictionCount = maxAgeEvictionCount;
+        this.expirationEvictionCount = expirationEvictionCount;
+        this.sizeEvictionCount = sizeEvictionCount;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.cleanCount = cleanCount;
+        this.totalCleanTime = totalCleanTime;
+    }
+
+    /**
+     * Returns count of hits.
+     *
+     * @return the count of hits.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns count of misses.
+     *
+     * @return the count of misses.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns count of requests, i.e. hits plus misses.
+     *
+     * @return the count of requests.
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Returns a ratio of hits to requests.
+     *
+     * @return the hit rate or 1.0 if there was no requests.
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * Returns count of puts.
+     *
+     * @return the count of puts.
+     */
+    public long getPutCount() {
+        return putCount;
+    }
+
+    /**
+     * Returns count of evictions because of the specified reason.
+     *
+     * @param reason the reason.
+     * @return the count of evictions.
+     */
+    public long getEvictionCount(EvictionReason reason) {
+        switch (reason) {
+            case MAX_AGE:
+                return maxAgeEvictionCount;
+            case EXPIRATION:
+                return expirationEvictionCount;
+            case SIZE:
+                return sizeEvictionCount;
+            default:
+                throw new IllegalArgumentException("unknown reason: " + reason);
+        }
+    }
+
+    /**
+     * Returns total count of evictions.
+     *
+     * @return the count of evictions.
+     */
+    public long getEvictionCount() {
+        return maxAgeEvictionCount + expirationEvictionCount + sizeEvictionCount;
+    }
+
+    /**
+     * Returns count of bytes read from the storage.
+     *
+     * @return the count of bytes.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns count of bytes written to the storage.
+     *
+     * @return the count of bytes.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns count of successful loads by loaders.
+     *
+     * @return the count of loads.
+     */
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * Returns count of failed loads by loaders.
+     *
+     * @return the count of loads.
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * Returns total time spent by loaders.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * Returns average time spent by one load.
+     *
+     * @return the time in nanoseconds.
+     */
+    public double getAverageLoadTime() {
+        long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    /**
+     * Returns count of cleanings.
+     *
+     * @return the count of cleanings.
+     */
+    public long getCleanCount() {
+        return cleanCount;
+    }
+
+    /**
+     * Returns total duration of cleanings.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getTotalCleanTime() {
+        return totalCleanTime;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", putCount=" + putCount +
+                ", maxAgeEvictionCount=" + maxAgeEvictionCount +
+                ", expirationEvictionCount=" + expirationEvictionCount +
+                ", sizeEvictionCount=" + sizeEvictionCount +
+                ", bytesRead=" + bytesRead +
+                ", bytesWritten=" + bytesWritten +
+                ", loadSuccessCount=" + loadSuccessCount +
+                ", loadFailureCount=" + loadFailureCount +
+                ", totalLoadTime=" + totalLoadTime +
+                ", cleanCount=" + cleanCount +
+                ", totalCleanTime=" + totalCleanTime +
+                '}';
+    }
+
+}
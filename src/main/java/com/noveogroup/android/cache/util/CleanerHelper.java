@@ -26,9 +26,14 @@
 
 package com.noveogroup.android.cache.util;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public final class CleanerHelper {
 
@@ -135,6 +140,77 @@ public final class CleanerHelper {
 
     }
 
+    /**
+     * Loads items from partitions of the file list in parallel.
+     * Each partition is processed by {@link #entities(Loader, List, List, List)}
+     * in a separate task of the executor, results are merged in order of partitions.
+     * If the executor is null partitions are processed in the current thread.
+     *
+     * @param loader        the loader. Should be thread-safe.
+     * @param partitions    the partitions of the sources list.
+     * @param expiredList   a list of expired items.
+     * @param protectedList a list of protected items.
+     * @param executor      the executor or null.
+     */
+    public static <I extends Item<?>, S> void entities(final Loader<I, S> loader, List<List<S>> partitions,
+                                                       List<I> expiredList, List<I> protectedList,
+                                                       ExecutorService executor) {
+        if (executor == null) {
+            for (List<S> partition : partitions) {
+                entities(loader, partition, expiredList, protectedList);
+            }
+            return;
+        }
+
+        List<Future<List<List<I>>>> futures = new ArrayList<Future<List<List<I>>>>(partitions.size());
+        for (final List<S> partition : partitions) {
+            futures.add(executor.submit(new Callable<List<List<I>>>() {
+                @Override
+                public List<List<I>> call() {
+                    List<I> expiredPart = new ArrayList<I>(partition.size());
+                    List<I> protectedPart = new ArrayList<I>(partition.size());
+                    entities(loader, partition, expiredPart, protectedPart);
+                    List<List<I>> result = new ArrayList<List<I>>(2);
+                    result.add(expiredPart);
+                    result.add(protectedPart);
+                    return result;
+                }
+            }));
+        }
+
+        for (Future<List<List<I>>> future : futures) {
+            List<List<I>> result = getResult(future);
+            expiredList.addAll(result.get(0));
+            protectedList.addAll(result.get(1));
+        }
+    }
+
+    /**
+     * Waits for a result of a scan task.
+     *
+     * @param future the future of the task.
+     * @param <T>    the type of the result.
+     * @return the result.
+     */
+    public static <T> T getResult(Future<T> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * Loads items from the file list using the specified loader.
      * Deletes items that CAN and SHOULD be deleted.
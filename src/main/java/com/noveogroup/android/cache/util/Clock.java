@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.util;
+
+/**
+ * Clock provides current time to caches and cleaners.
+ * <p/>
+ * Two time bases are used: wall clock time is stored to the disk and
+ * should be comparable between launches of an application, uptime is
+ * used to measure intervals in memory and should be monotonic.
+ */
+public interface Clock {
+
+    /**
+     * Returns current wall clock time.
+     *
+     * @return the time in milliseconds since epoch.
+     * @see System#currentTimeMillis()
+     */
+    public long currentTimeMillis();
+
+    /**
+     * Returns monotonic time since some fixed point.
+     *
+     * @return the time in milliseconds.
+     * @see android.os.SystemClock#uptimeMillis()
+     */
+    public long uptimeMillis();
+
+}
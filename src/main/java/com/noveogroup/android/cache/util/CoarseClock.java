@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.util;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Coarse-grained clock. Values of the source clock are cached and updated
+ * by a timer, so reading the time costs one volatile read instead of
+ * a system call. Accuracy of the clock is limited by its resolution.
+ * <p/>
+ * Every instance owns a timer thread, so one instance should be shared
+ * between caches.
+ */
+public class CoarseClock implements Clock {
+
+    /**
+     * Default resolution of the clock in milliseconds.
+     */
+    public static final long DEFAULT_RESOLUTION = 10;
+
+    private final Clock source;
+    private final Timer timer;
+
+    private volatile long currentTimeMillis;
+    private volatile long uptimeMillis;
+
+    /**
+     * Creates new coarse clock using default clock as a source
+     * and default resolution.
+     */
+    public CoarseClock() {
+        this(new DefaultClock(), DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Creates new coarse clock.
+     *
+     * @param source     the source clock.
+     * @param resolution the period of updates in milliseconds.
+     */
+    public CoarseClock(Clock source, long resolution) {
+        if (source == null) {
+            throw new NullPointerException();
+        }
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("resolution should be positive");
+        }
+
+        this.source = source;
+        update();
+
+        this.timer = new Timer("NoveoCoarseClock", true);
+        this.timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                update();
+            }
+        }, resolution, resolution);
+    }
+
+    private void update() {
+        currentTimeMillis = source.currentTimeMillis();
+        uptimeMillis = source.uptimeMillis();
+    }
+
+    /**
+     * Stops updating of the clock. The clock will return the last values.
+     */
+    public void stop() {
+        timer.cancel();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return uptimeMillis;
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.util;
+
+/**
+ * Implementation of MurmurHash3 x64 128-bit hash function.
+ * Only the first 64 bits of the hash are returned.
+ */
+public final class MurmurHash3 {
+
+    private static final long C1 = 0x87C37B91114253D5L;
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    private MurmurHash3() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        return (data[offset] & 0xFFL)
+                | (data[offset + 1] & 0xFFL) << 8
+                | (data[offset + 2] & 0xFFL) << 16
+                | (data[offset + 3] & 0xFFL) << 24
+                | (data[offset + 4] & 0xFFL) << 32
+                | (data[offset + 5] & 0xFFL) << 40
+                | (data[offset + 6] & 0xFFL) << 48
+                | (data[offset + 7] & 0xFFL) << 56;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Calculates 64-bit hash of the whole array with zero seed.
+     *
+     * @param data the data.
+     * @return the hash.
+     */
+    public static long hash64(byte[] data) {
+        return hash64(data, 0, data.length, 0);
+    }
+
+    /**
+     * Calculates 64-bit hash of a part of the array.
+     *
+     * @param data   the data.
+     * @param offset the offset of the part.
+     * @param length the length of the part.
+     * @param seed   the seed.
+     * @return the hash.
+     */
+    @SuppressWarnings("fallthrough")
+    public static long hash64(byte[] data, int offset, int length, long seed) {
+        long h1 = seed;
+        long h2 = seed;
+
+        // body
+        int blockCount = length / 16;
+        for (int i = 0; i < blockCount; i++) {
+            int position = offset + i * 16;
+            long k1 = getLong(data, position);
+            long k2 = getLong(data, position + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52DCE729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495AB5;
+        }
+
+        // tail
+        int tail = offset + blockCount * 16;
+        long k1 = 0;
+        long k2 = 0;
+        switch (length & 15) {
+            case 15:
+                k2 ^= (data[tail + 14] & 0xFFL) << 48;
+            case 14:
+                k2 ^= (data[tail + 13] & 0xFFL) << 40;
+            case 13:
+                k2 ^= (data[tail + 12] & 0xFFL) << 32;
+            case 12:
+                k2 ^= (data[tail + 11] & 0xFFL) << 24;
+            case 11:
+                k2 ^= (data[tail + 10] & 0xFFL) << 16;
+            case 10:
+                k2 ^= (data[tail + 9] & 0xFFL) << 8;
+            case 9:
+                k2 ^= data[tail + 8] & 0xFFL;
+                h2 ^= mixK2(k2);
+            case 8:
+                k1 ^= (data[tail + 7] & 0xFFL) << 56;
+            case 7:
+                k1 ^= (data[tail + 6] & 0xFFL) << 48;
+            case 6:
+                k1 ^= (data[tail + 5] & 0xFFL) << 40;
+            case 5:
+                k1 ^= (data[tail + 4] & 0xFFL) << 32;
+            case 4:
+                k1 ^= (data[tail + 3] & 0xFFL) << 24;
+            case 3:
+                k1 ^= (data[tail + 2] & 0xFFL) << 16;
+            case 2:
+                k1 ^= (data[tail + 1] & 0xFFL) << 8;
+            case 1:
+                k1 ^= data[tail] & 0xFFL;
+                h1 ^= mixK1(k1);
+        }
+
+        // finalization
+        h1 ^= length;
+        h2 ^= length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+
+        h1 += h2;
+        return h1;
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.util;
+
+import com.noveogroup.android.cache.io.KeyManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent loads of the same key. Only one load per key
+ * is running at a time, other callers wait for its result.
+ * <p/>
+ * Results and failures are not remembered: a load started after
+ * the previous one has finished will call a loader again.
+ *
+ * @param <K> a type of keys.
+ * @param <V> a type of values.
+ */
+public class SingleFlight<K, V> {
+
+    private static class KeyHolder<K> {
+
+        private final KeyManager<K> keyManager;
+        private final K key;
+
+        public KeyHolder(KeyManager<K> keyManager, K key) {
+            this.keyManager = keyManager;
+            this.key = key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            KeyHolder<K> keyHolder = (KeyHolder<K>) o;
+            return keyManager.equals(key, keyHolder.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return keyManager.hashCode(key);
+        }
+
+    }
+
+    private static class Call<V> {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private V value;
+        private Throwable error;
+
+        public void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    latch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    private final Object lock = new Object();
+    private final Map<KeyHolder<K>, Call<V>> calls = new HashMap<KeyHolder<K>, Call<V>>();
+
+    private final KeyManager<K> keyManager;
+
+    /**
+     * Creates new single flight group.
+     *
+     * @param keyManager a key manager.
+     */
+    public SingleFlight(KeyManager<K> keyManager) {
+        this.keyManager = keyManager;
+    }
+
+    /**
+     * Checks if there is a load of the specified key in flight.
+     *
+     * @param key the key.
+     * @return true if the key is being loaded now.
+     */
+    public boolean isLoading(K key) {
+        synchronized (lock) {
+            return calls.containsKey(new KeyHolder<K>(keyManager, key));
+        }
+    }
+
+    /**
+     * Loads a value using the specified loader. If the key is being loaded
+     * by another thread, waits for the result of that load instead.
+     *
+     * @param key    the key.
+     * @param loader the loader.
+     * @return the loaded value.
+     * @throws ExecutionException if the loader has thrown an exception.
+     */
+    public V load(K key, Loader<K, V> loader) throws ExecutionException {
+        KeyHolder<K> keyHolder = new KeyHolder<K>(keyManager, key);
+
+        Call<V> call;
+        boolean owner = false;
+        synchronized (lock) {
+            call = calls.get(keyHolder);
+            if (call == null) {
+                call = new Call<V>();
+                calls.put(keyHolder, call);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            try {
+                call.value = loader.load(key);
+            } catch (Throwable e) {
+                call.error = e;
+            } finally {
+                synchronized (lock) {
+                    calls.remove(keyHolder);
+                }
+                call.latch.countDown();
+            }
+            if (call.error instanceof Error) {
+                throw (Error) call.error;
+            }
+        } else {
+            call.await();
+        }
+
+        if (call.error != null) {
+            throw new ExecutionException(call.error);
+        }
+        return call.value;
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.util;
+
+/**
+ * Collects statistics of a cache. Collecting is turned off by default,
+ * all record methods do nothing until it is turned on.
+ *
+ * @see CacheStats
+ */
+public class StatsCounter {
+
+    private volatile boolean enabled = false;
+
+    private final StripedCounter hitCount = new StripedCounter();
+    private final StripedCounter missCount = new StripedCounter();
+    private final StripedCounter putCount = new StripedCounter();
+    private final StripedCounter maxAgeEvictionCount = new StripedCounter();
+    private final StripedCounter expirationEvictionCount = new StripedCounter();
+    private final StripedCounter sizeEvictionCount = new StripedCounter();
+    private final StripedCounter bytesRead = new StripedCounter();
+    private final StripedCounter bytesWritten = new StripedCounter();
+    private final StripedCounter loadSuccessCount = new StripedCounter();
+    private final StripedCounter loadFailureCount = new StripedCounter();
+    private final StripedCounter totalLoadTime = new StripedCounter();
+    private final StripedCounter cleanCount = new StripedCounter();
+    private final StripedCounter totalCleanTime = new StripedCounter();
+
+    /**
+     * Checks if collecting of statistics is turned on.
+     *
+     * @return true if statistics is collected.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns collecting of statistics on and off.
+     *
+     * @param enabled true to collect statistics.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records a hit or a miss.
+     *
+     * @param hit true if the request is a hit.
+     */
+    public void recordRequest(boolean hit) {
+        if (enabled) {
+            (hit ? hitCount : missCount).increment();
+        }
+    }
+
+    /**
+     * Records a put.
+     */
+    public void recordPut() {
+        if (enabled) {
+            putCount.increment();
+        }
+    }
+
+    /**
+     * Records an eviction.
+     *
+     * @param reason the reason of the eviction.
+     */
+    public void recordEviction(CacheStats.EvictionReason reason) {
+        if (enabled) {
+            switch (reason) {
+                case MAX_AGE:
+                    maxAgeEvictionCount.increment();
+                    break;
+                case EXPIRATION:
+                    expirationEvictionCount.increment();
+                    break;
+                case SIZE:
+                    sizeEvictionCount.increment();
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Records bytes read from the storage.
+     *
+     * @param count the count of bytes.
+     */
+    public void recordBytesRead(long count) {
+        if (enabled) {
+            bytesRead.add(count);
+        }
+    }
+
+    /**
+     * Records bytes written to the storage.
+     *
+     * @param count the count of bytes.
+     */
+    public void recordBytesWritten(long count) {
+        if (enabled) {
+            bytesWritten.add(count);
+        }
+    }
+
+    /**
+     * Records a load by a loader.
+     *
+     * @param success  true if the load is successful.
+     * @param loadTime the time of the load in nanoseconds.
+     */
+    public void recordLoad(boolean success, long loadTime) {
+        if (enabled) {
+            (success ? loadSuccessCount : loadFailureCount).increment();
+            totalLoadTime.add(loadTime);
+        }
+    }
+
+    /**
+     * Records a cleaning.
+     *
+     * @param cleanTime the duration of the cleaning in milliseconds.
+     */
+    public void recordClean(long cleanTime) {
+        if (enabled) {
+            cleanCount.increment();
+            totalCleanTime.add(cleanTime);
+        }
+    }
+
+    /**
+     * Returns a snapshot of collected statistics.
+     *
+     * @return the statistics.
+     */
+    public CacheStats snapshot() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), putCount.sum(),
+                maxAgeEvictionCount.sum(), expirationEvictionCount.sum(), sizeEvictionCount.sum(),
+                bytesRead.sum(), bytesWritten.sum(),
+                loadSuccessCount.sum(), loadFailureCount.sum(), totalLoadTime.sum(),
+                cleanCount.sum(), totalCleanTime.sum());
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        hitCount.reset();
+        missCount.reset();
+        putCount.reset();
+        maxAgeEvictionCount.reset();
+        expirationEvictionCount.reset();
+        sizeEvictionCount.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+        loadSuccessCount.reset();
+        loadFailureCount.reset();
+        totalLoadTime.reset();
+        cleanCount.reset();
+        totalCleanTime.reset();
+    }
+
+}
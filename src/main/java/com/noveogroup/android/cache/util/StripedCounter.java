@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Low-overhead counter for statistics. Updates from different threads
+ * go to different stripes to avoid contention on one memory location.
+ * Stripes are padded to keep them on different cache lines.
+ */
+public class StripedCounter {
+
+    private static final int PADDING = 8;
+    private static final int STRIPE_COUNT;
+
+    static {
+        int count = 1;
+        int processors = Runtime.getRuntime().availableProcessors();
+        while (count < processors * 2) {
+            count <<= 1;
+        }
+        STRIPE_COUNT = count;
+    }
+
+    private final AtomicLongArray stripes = new AtomicLongArray(STRIPE_COUNT * PADDING);
+
+    private static int index() {
+        return (int) (Thread.currentThread().getId() & (STRIPE_COUNT - 1)) * PADDING;
+    }
+
+    /**
+     * Adds the specified value to the counter.
+     *
+     * @param value the value.
+     */
+    public void add(long value) {
+        stripes.addAndGet(index(), value);
+    }
+
+    /**
+     * Increments the counter.
+     */
+    public void increment() {
+        stripes.incrementAndGet(index());
+    }
+
+    /**
+     * Returns a sum of all stripes. The result is not an atomic snapshot
+     * if the counter is being updated concurrently.
+     *
+     * @return the value of the counter.
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            sum += stripes.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * Resets the counter to zero.
+     */
+    public void reset() {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes.set(i * PADDING, 0);
+        }
+    }
+
+}
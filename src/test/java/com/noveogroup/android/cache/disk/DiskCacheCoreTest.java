@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import com.noveogroup.android.cache.io.DefaultKeyManager;
+import com.noveogroup.android.cache.io.StringSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiskCacheCoreTest {
+
+    private static final long INDEX_TIMEOUT = 10000;
+
+    private File directory;
+    private DiskCacheCore<String> cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("disk-cache-core-test", "");
+        directory.delete();
+        directory.mkdirs();
+        cache = new DiskCacheCore<String>(false, directory, new DefaultKeyManager<String>(), new StringSerializer());
+        cache.setKeyMatchingEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        Utils.deleteRecursively(directory);
+    }
+
+    private void enableKeyIndex() throws InterruptedException {
+        cache.setKeyIndexEnabled(true);
+        long deadline = System.currentTimeMillis() + INDEX_TIMEOUT;
+        while (!cache.isIndexReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(cache.isIndexReady());
+    }
+
+    private static long fingerprint(String key) throws IOException {
+        return DiskCacheEntry.fingerprint(DiskCacheEntry.serializeKey(key, new StringSerializer()));
+    }
+
+    // keys covering all counters of the key in the filter of an empty cache,
+    // each of them has a counter shared with the key only
+    private static List<String> getCollidingKeys(String key) throws IOException {
+        long fingerprint = fingerprint(key);
+        List<String> keys = new ArrayList<String>();
+        BloomFilter filter = KeyIndex.createFilter(0);
+        while (!filter.mightContain(fingerprint)) {
+            String collidingKey = "colliding-" + keys.size();
+            keys.add(collidingKey);
+            filter.add(fingerprint(collidingKey));
+        }
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            long collidingFingerprint = fingerprint(keys.get(i));
+            filter.remove(collidingFingerprint);
+            if (filter.mightContain(fingerprint)) {
+                keys.remove(i);
+            } else {
+                filter.add(collidingFingerprint);
+            }
+        }
+        return keys;
+    }
+
+    private void put(String key) throws IOException {
+        cache.create(key).commit();
+    }
+
+    @Test
+    public void testSecondRemovalKeepsCollidingKeys() throws Exception {
+        enableKeyIndex();
+        List<String> collidingKeys = getCollidingKeys("key");
+        put("key");
+        for (String collidingKey : collidingKeys) {
+            put(collidingKey);
+        }
+
+        // a stale entry removes the removed key again
+        DiskCacheCore.Entry<String> entry = cache.search("key");
+        DiskCacheCore.Entry<String> staleEntry = cache.search("key");
+        entry.remove();
+        staleEntry.remove();
+
+        assertNull(cache.search("key"));
+        for (String collidingKey : collidingKeys) {
+            assertNotNull(collidingKey, cache.search(collidingKey));
+        }
+    }
+
+    @Test
+    public void testRecreatedEntryIsIndexed() throws Exception {
+        enableKeyIndex();
+        put("key");
+
+        // the entry is removed while another thread updates it
+        DiskCacheCore.Entry<String> entry = cache.search("key");
+        DiskCacheCore.Entry<String> updatedEntry = cache.search("key");
+        entry.remove();
+        updatedEntry.access();
+        updatedEntry.commit();
+
+        assertNotNull(cache.search("key"));
+    }
+
+}
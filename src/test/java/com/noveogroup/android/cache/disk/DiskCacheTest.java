@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import com.noveogroup.android.cache.io.InputSource;
+import com.noveogroup.android.cache.io.OutputSource;
+import com.noveogroup.android.cache.io.Serializer;
+import com.noveogroup.android.cache.io.StringSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DiskCacheTest {
+
+    private static final long TIMEOUT = 10000;
+
+    // blocks saving of the value until the save is allowed
+    private static class BlockingSerializer implements Serializer<String> {
+
+        private final Serializer<String> serializer = new StringSerializer();
+        private final String blockedValue;
+        private final CountDownLatch saveStarted = new CountDownLatch(1);
+        private final CountDownLatch saveAllowed = new CountDownLatch(1);
+
+        public BlockingSerializer(String blockedValue) {
+            this.blockedValue = blockedValue;
+        }
+
+        @Override
+        public void save(OutputSource outputSource, String value) throws IOException {
+            if (blockedValue.equals(value)) {
+                saveStarted.countDown();
+                try {
+                    saveAllowed.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException("interrupted");
+                }
+            }
+            serializer.save(outputSource, value);
+        }
+
+        @Override
+        public String load(InputSource inputSource) throws IOException {
+            return serializer.load(inputSource);
+        }
+
+    }
+
+    private File directory;
+    private DiskCache<String> cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("disk-cache-test", "");
+        directory.delete();
+        directory.mkdirs();
+        cache = DiskCache.create(directory, String.class);
+    }
+
+    @After
+    public void tearDown() {
+        Utils.deleteRecursively(directory);
+    }
+
+    private static MetaData tag(String value) {
+        return new MetaData().putValue("tag", value);
+    }
+
+    @Test
+    public void testGetReturnsPendingPut() throws InterruptedException {
+        BlockingSerializer serializer = new BlockingSerializer("blocked");
+        cache.setWriteBehindCapacity(16);
+
+        // the background thread writes the first value, the second one waits
+        String value = new String("value");
+        cache.put("first", "blocked", serializer);
+        assertTrue(serializer.saveStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        cache.put("key", value, serializer);
+        assertEquals(2, cache.getPendingWriteCount());
+
+        assertSame(value, cache.get("key", serializer));
+        assertEquals("blocked", cache.get("first", serializer));
+        assertTrue(cache.contains("key"));
+
+        serializer.saveAllowed.countDown();
+        cache.flush();
+        assertEquals(0, cache.getPendingWriteCount());
+        String loaded = cache.get("key", serializer);
+        assertEquals(value, loaded);
+        assertNotSame(value, loaded);
+    }
+
+    @Test
+    public void testRemoveWhereAfterMetaDataChange() {
+        cache.setIndexedFields(new HashSet<String>(Arrays.asList("tag")));
+        StringSerializer serializer = new StringSerializer();
+        cache.put("a", "1", tag("old"), serializer);
+        cache.put("b", "2", tag("old"), serializer);
+        cache.putMetaData("a", tag("new"));
+
+        assertEquals(1, cache.removeWhere("tag", "old"));
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+
+        assertEquals(1, cache.removeWhere("tag", "new"));
+        assertFalse(cache.contains("a"));
+    }
+
+    @Test
+    public void testRemoveWhereWritesPendingPuts() {
+        cache.setIndexedFields(new HashSet<String>(Arrays.asList("tag")));
+        cache.setWriteBehindCapacity(16);
+        StringSerializer serializer = new StringSerializer();
+        cache.put("a", "1", tag("old"), serializer);
+        cache.put("a", "2", tag("new"), serializer);
+
+        assertEquals(0, cache.removeWhere("tag", "old"));
+        assertEquals(1, cache.removeWhere("tag", "new"));
+        assertFalse(cache.contains("a"));
+    }
+
+}
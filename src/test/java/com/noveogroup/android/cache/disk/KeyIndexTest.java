@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import com.noveogroup.android.cache.util.Clock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class KeyIndexTest {
+
+    private static final long K1 = 0x1D2B3C4D5E6F7081L;
+    private static final long K2 = 0x2E3F405162738495L;
+
+    private File directory;
+    private long time = 0;
+    private final Clock clock = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return time;
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return time;
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("key-index-test", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        Utils.deleteRecursively(directory);
+    }
+
+    // an index of an instance using the directory
+    private KeyIndex createIndex() {
+        return new KeyIndex(new File(directory, "key-index"),
+                new ChangeStamp(new File(directory, "key-index.stamp"),
+                        new LockFile(new File(directory, "key-index.stamp.lock"))), clock);
+    }
+
+    private static void put(KeyIndex index, long fingerprint) {
+        index.add(fingerprint);
+        index.commit(fingerprint);
+    }
+
+    private static void scan(KeyIndex index, long... fingerprints) {
+        long stamp = index.beginScan();
+        BloomFilter scanned = KeyIndex.createFilter(fingerprints.length);
+        for (long fingerprint : fingerprints) {
+            scanned.add(fingerprint);
+        }
+        index.finishScan(scanned, 0, stamp);
+    }
+
+    private static BloomFilter load(KeyIndex index) {
+        long stamp = index.beginScan();
+        BloomFilter loaded = index.load(stamp);
+        index.finishScan(loaded, 0, stamp);
+        return loaded;
+    }
+
+    @Test
+    public void testLoadSavedIndex() {
+        KeyIndex a = createIndex();
+        a.createStamp();
+        put(a, K1);
+        scan(a, K1);
+        a.save();
+
+        BloomFilter loaded = load(createIndex());
+        assertNotNull(loaded);
+        assertTrue(loaded.mightContain(K1));
+    }
+
+    @Test
+    public void testSavedIndexIsStaleAfterAdditionOfOtherInstance() {
+        KeyIndex a = createIndex();
+        KeyIndex b = createIndex();
+        a.createStamp();
+
+        put(b, K1);
+        scan(a, K1);
+        a.save();
+        put(b, K2);
+
+        // the saved index doesn't know K2
+        assertNull(load(createIndex()));
+    }
+
+    @Test
+    public void testOwnAdditionsKeepSavedIndexValid() {
+        KeyIndex a = createIndex();
+        a.createStamp();
+        scan(a);
+        put(a, K1);
+        a.save();
+
+        BloomFilter loaded = load(createIndex());
+        assertNotNull(loaded);
+        assertTrue(loaded.mightContain(K1));
+    }
+
+    @Test
+    public void testAdditionDuringScanIsKept() {
+        KeyIndex a = createIndex();
+        a.createStamp();
+
+        // the scan misses the entry added after listing
+        long stamp = a.beginScan();
+        put(a, K1);
+        a.finishScan(KeyIndex.createFilter(0), 0, stamp);
+        assertTrue(a.contains(K1));
+        a.save();
+
+        BloomFilter loaded = load(createIndex());
+        assertNotNull(loaded);
+        assertTrue(loaded.mightContain(K1));
+    }
+
+    @Test
+    public void testMissingFingerprintIsNotTrustedAfterAdditionOfOtherInstance() {
+        KeyIndex a = createIndex();
+        KeyIndex b = createIndex();
+        a.createStamp();
+        scan(a);
+        scan(b);
+        assertFalse(a.contains(K1));
+
+        // lookups see the addition when they reread the stamp
+        put(b, K1);
+        assertFalse(a.contains(K1));
+        time += KeyIndex.STAMP_READ_INTERVAL;
+        assertTrue(a.contains(K1));
+        assertFalse(a.isCurrent());
+        assertTrue(b.isCurrent());
+
+        // a rebuilt index is trusted again
+        scan(a, K1);
+        assertTrue(a.isCurrent());
+        assertFalse(a.contains(K2));
+    }
+
+    @Test
+    public void testDeletedStampIsNotRecreatedByCommits() {
+        KeyIndex a = createIndex();
+        KeyIndex b = createIndex();
+        a.createStamp();
+        scan(a);
+        scan(b);
+
+        a.deleteStamp();
+        put(b, K1);
+        assertFalse(new File(directory, "key-index.stamp").exists());
+        assertFalse(a.isCurrent());
+        assertTrue(a.contains(K2));
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.disk;
+
+import com.noveogroup.android.cache.io.DefaultKeyManager;
+import com.noveogroup.android.cache.util.DaemonThreadFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindQueueTest {
+
+    private static final long TIMEOUT = 10000;
+    private static final long WAIT_TIME = 100;
+
+    private final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch writeStarted = new CountDownLatch(1);
+    private final CountDownLatch writeAllowed = new CountDownLatch(1);
+    private WriteBehindQueue<String, String> queue;
+
+    @Before
+    public void setUp() {
+        queue = new WriteBehindQueue<String, String>(new DefaultKeyManager<String>(),
+                new DaemonThreadFactory("WriteBehindQueueTest")) {
+            @Override
+            protected void write(String key, String item) {
+                writeStarted.countDown();
+                await(writeAllowed);
+                written.add(key + "=" + item);
+            }
+
+            @Override
+            protected String merge(String previous, String next) {
+                return previous + next;
+            }
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // makes the background thread busy with a write of the first key
+    private void blockWriter() {
+        queue.offer("first", "0", 16);
+        await(writeStarted);
+    }
+
+    private void waitForWrites(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (written.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testPendingItemsOfKeyAreMerged() {
+        blockWriter();
+        queue.offer("key", "1", 16);
+        queue.offer("key", "2", 16);
+        queue.offer("key", "3", 16);
+        assertEquals(2, queue.size());
+        assertEquals("123", queue.peek("key"));
+
+        writeAllowed.countDown();
+        queue.flush();
+        assertEquals(Arrays.asList("first=0", "key=123"), written);
+        assertEquals(0, queue.size());
+        assertNull(queue.peek("key"));
+    }
+
+    @Test
+    public void testClaimWaitsForRunningWrite() throws InterruptedException {
+        queue.offer("key", "1", 16);
+        await(writeStarted);
+
+        final CountDownLatch claimed = new CountDownLatch(1);
+        final String[] claimedItem = {"none"};
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                claimedItem[0] = queue.claim("key");
+                claimed.countDown();
+            }
+        }).start();
+        assertFalse(claimed.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        writeAllowed.countDown();
+        await(claimed);
+        assertEquals(Arrays.asList("key=1"), written);
+        assertNull(claimedItem[0]);
+        queue.release("key", null);
+    }
+
+    @Test
+    public void testClaimedKeyIsNotWritten() throws InterruptedException {
+        writeAllowed.countDown();
+        assertNull(queue.claim("key"));
+        queue.offer("key", "1", 16);
+        queue.offer("other", "2", 16);
+        waitForWrites(1);
+        Thread.sleep(WAIT_TIME);
+        assertEquals(Arrays.asList("other=2"), written);
+        assertEquals("1", queue.peek("key"));
+
+        // the item is written after release
+        queue.release("key", null);
+        queue.flush();
+        assertEquals(Arrays.asList("other=2", "key=1"), written);
+    }
+
+    @Test
+    public void testReleaseRemovesClaimedItem() {
+        blockWriter();
+        queue.offer("key", "1", 16);
+
+        // the claiming thread writes the item itself
+        String item = queue.claim("key");
+        assertEquals("1", item);
+        queue.release("key", item);
+        assertNull(queue.peek("key"));
+
+        writeAllowed.countDown();
+        queue.flush();
+        assertEquals(Arrays.asList("first=0"), written);
+    }
+
+    @Test
+    public void testReleaseKeepsReplacedItem() {
+        blockWriter();
+        queue.offer("key", "1", 16);
+
+        String item = queue.claim("key");
+        queue.offer("key", "2", 16);
+        queue.release("key", item);
+        assertEquals("12", queue.peek("key"));
+
+        writeAllowed.countDown();
+        queue.flush();
+        assertEquals(Arrays.asList("first=0", "key=12"), written);
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.memory;
+
+import com.noveogroup.android.cache.io.DefaultKeyManager;
+import com.noveogroup.android.cache.util.Clock;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryCacheTest {
+
+    private long time;
+
+    private final Clock clock = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return time;
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return time;
+        }
+    };
+
+    private final MemoryCache<String, String> cache = new MemoryCache<String, String>(new DefaultKeyManager<String>(), clock);
+
+    @Test
+    public void testContainsDoesNotAssociateValue() {
+        cache.put("key", "value");
+        MemoryCache.Access<String, String> access = cache.access(new Object());
+
+        assertTrue(access.contains("key"));
+        assertEquals(0, access.size());
+
+        assertEquals("value", access.get("key").get());
+        assertEquals(1, access.size());
+    }
+
+    @Test
+    public void testContainsSkipsExpiredValue() {
+        cache.put("key", "value", 100);
+        assertTrue(cache.contains("key"));
+
+        time += 101;
+        assertFalse(cache.contains("key"));
+        assertEquals(null, cache.get("key").get());
+    }
+
+}
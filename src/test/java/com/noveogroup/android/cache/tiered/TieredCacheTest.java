@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2013 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.noveogroup.android.cache.tiered;
+
+import com.noveogroup.android.cache.disk.DiskCache;
+import com.noveogroup.android.cache.io.InputSource;
+import com.noveogroup.android.cache.io.OutputSource;
+import com.noveogroup.android.cache.io.Serializer;
+import com.noveogroup.android.cache.io.StringSerializer;
+import com.noveogroup.android.cache.memory.MemoryCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TieredCacheTest {
+
+    private static final long TIMEOUT = 10000;
+
+    private static final String BLOCKED_VALUE = "blocked";
+
+    // blocks loading of values and saving of the blocked value until they are allowed
+    private static class BlockingSerializer implements Serializer<String> {
+
+        private final Serializer<String> serializer = new StringSerializer();
+        private final CountDownLatch loadStarted = new CountDownLatch(1);
+        private final CountDownLatch loadAllowed = new CountDownLatch(1);
+        private final CountDownLatch saveStarted = new CountDownLatch(1);
+        private final CountDownLatch saveAllowed = new CountDownLatch(1);
+
+        @Override
+        public void save(OutputSource outputSource, String value) throws IOException {
+            if (BLOCKED_VALUE.equals(value)) {
+                saveStarted.countDown();
+                try {
+                    saveAllowed.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException("interrupted");
+                }
+            }
+            serializer.save(outputSource, value);
+        }
+
+        @Override
+        public String load(InputSource inputSource) throws IOException {
+            String value = serializer.load(inputSource);
+            loadStarted.countDown();
+            try {
+                loadAllowed.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException("interrupted");
+            }
+            return value;
+        }
+
+    }
+
+    private File directory;
+    private MemoryCache<String, String> memoryCache;
+    private DiskCache<String> diskCache;
+    private BlockingSerializer serializer;
+    private TieredCache<String, String> tieredCache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("tiered-cache-test", "");
+        directory.delete();
+        directory.mkdirs();
+        memoryCache = new MemoryCache<String, String>();
+        diskCache = DiskCache.create(directory, String.class);
+        serializer = new BlockingSerializer();
+        tieredCache = new TieredCache<String, String>(memoryCache, diskCache, serializer);
+        diskCache.put("key", "old", new StringSerializer());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        serializer.loadAllowed.countDown();
+        serializer.saveAllowed.countDown();
+        tieredCache.close();
+        diskCache.erase();
+        directory.delete();
+    }
+
+    private Thread startGet(final AtomicReference<String> result) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                result.set(tieredCache.get("key"));
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void testValueReadBeforeRemoveIsNotPromoted() throws InterruptedException {
+        AtomicReference<String> result = new AtomicReference<String>();
+        Thread thread = startGet(result);
+        assertTrue(serializer.loadStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        tieredCache.remove("key");
+        serializer.loadAllowed.countDown();
+        thread.join(TIMEOUT);
+
+        assertEquals("old", result.get());
+        assertFalse(memoryCache.contains("key"));
+        assertNull(tieredCache.get("key"));
+    }
+
+    @Test
+    public void testValueReadBeforePutIsNotPromoted() throws InterruptedException {
+        AtomicReference<String> result = new AtomicReference<String>();
+        Thread thread = startGet(result);
+        assertTrue(serializer.loadStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        tieredCache.put("key", "new");
+        serializer.loadAllowed.countDown();
+        thread.join(TIMEOUT);
+
+        assertEquals("new", memoryCache.get("key").get());
+        assertEquals("new", tieredCache.get("key"));
+    }
+
+    @Test
+    public void testValuePrefetchedBeforeRemoveIsNotPromoted() throws Exception {
+        Future<Integer> future = tieredCache.prefetch(Arrays.asList("key"));
+        assertTrue(serializer.loadStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        tieredCache.remove("key");
+        serializer.loadAllowed.countDown();
+
+        assertEquals(0, future.get(TIMEOUT, TimeUnit.MILLISECONDS).intValue());
+        assertFalse(memoryCache.contains("key"));
+    }
+
+    @Test
+    public void testEraseDropsWritesBehind() throws InterruptedException {
+        tieredCache.setWriteMode(TieredCache.WriteMode.WRITE_BEHIND);
+        tieredCache.put("first", BLOCKED_VALUE);
+        assertTrue(serializer.saveStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        tieredCache.put("second", "value");
+
+        final AtomicReference<String> result = new AtomicReference<String>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                tieredCache.erase();
+                result.set(tieredCache.get("second"));
+            }
+        };
+        thread.start();
+        serializer.saveAllowed.countDown();
+        thread.join(TIMEOUT);
+
+        assertNull(result.get());
+        tieredCache.flush();
+        assertFalse(tieredCache.contains("first"));
+        assertFalse(diskCache.contains("second"));
+    }
+
+}